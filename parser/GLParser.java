@@ -4,15 +4,34 @@ import java.nio.file.StandardOpenOption;
 import java.io.FileInputStream;
 import java.io.BufferedInputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
 
 public class GLStaxParser {
 
@@ -22,12 +41,15 @@ public class GLStaxParser {
     //       when the method returns, the reader will be positioned at the END_ELEMENT
     //       of the target element
 
-    Map<String, String> parseEnums(XMLStreamReader reader) throws Exception {
+    // groups: enum group => enum names (added to)
+    Map<String, String> parseEnums(XMLStreamReader reader, Map<String, Set<String>> groups) throws Exception {
 
         // forms:
         // <enums namespace="GL" start="0x96F0" end="0x96FF" vendor="ARM" comment="Contact Jan-Harald Fredriksen">
+        // <enums namespace="GL" group="AttribMask" type="bitmask">
 
         Map<String, String> enums = new HashMap<>();
+        String enumsGroup = reader.getAttributeValue(null, "group");
 
         while (reader.hasNext()) {
             reader.next();
@@ -39,6 +61,7 @@ public class GLStaxParser {
                     String group = reader.getAttributeValue(null, "group");
 
                     enums.put(name, value);
+                    addEnumGroups(groups, name, group != null ? group : enumsGroup);
                 } else {
                     // <unused start="0x96F7" end="0x96FF" vendor="ARM"/>
                 }
@@ -50,6 +73,60 @@ public class GLStaxParser {
         throw new IllegalStateException("Missing end of 'enums' tag");
     }
 
+    // function pointer types: gltype => C typedef
+    Map<String, String> parseFuncTypes(XMLStreamReader reader) throws Exception {
+
+        // form:
+        // <type>typedef void (<apientry/> *<name>GLDEBUGPROC</name>)(GLenum source,...);</type>
+        //
+        // the other types are fixed (see Registry)
+
+        Map<String, String> funcTypes = new LinkedHashMap<>();
+        StringBuilder text = null;
+        String name = null;
+
+        while (reader.hasNext()) {
+            reader.next();
+            if (reader.isStartElement()) {
+                switch (reader.getLocalName()) {
+                    case "type" -> {
+                        text = new StringBuilder();
+                        name = reader.getAttributeValue(null, "name");
+                    }
+                    case "apientry" -> text.append("APIENTRY");
+                    case "name" -> {
+                        name = reader.getElementText();
+                        text.append(name);
+                    }
+                    default -> {
+                        // <ptype>
+                    }
+                }
+            } else if (reader.isCharacters() && text != null) {
+                text.append(reader.getText());
+            } else if (reader.isEndElement() && reader.getLocalName().equals("type")) {
+                String typedef = text.toString().trim();
+                if (typedef.startsWith("typedef") && typedef.contains("(APIENTRY *")) {
+                    funcTypes.put(name, typedef);
+                }
+                text = null;
+            } else if (reader.isEndElement() && reader.getLocalName().equals("types")) {
+                return funcTypes;
+            }
+        }
+        throw new IllegalStateException("Missing end of 'types' tag");
+    }
+
+    // group: null, or a comma separated list (e.g. "PixelFormat,InternalFormat")
+    static void addEnumGroups(Map<String, Set<String>> groups, String enumName, String group) {
+        if (group == null) {
+            return;
+        }
+        for (String groupName : group.split(",")) {
+            groups.computeIfAbsent(groupName.trim(), k -> new HashSet<>()).add(enumName);
+        }
+    }
+
     static class Proto {
         Type ret;
         String name;
@@ -168,7 +245,9 @@ public class GLStaxParser {
         // <param kind="Coord"><ptype>GLfloat</ptype> <name>value</name></param>
         //
         Param param = new Param();
-        // TODO group, kind attrs
+        param.len = reader.getAttributeValue(null, "len");
+        param.group = reader.getAttributeValue(null, "group");
+        param.kind = reader.getAttributeValue(null, "kind");
 
         // advance to first parse event within param
         reader.next();
@@ -194,6 +273,7 @@ public class GLStaxParser {
     static class Command {
         Proto proto;
         List<Param> params = new ArrayList<>();
+        String alias; // name of the command this is an alias of, or null
     }
 
     Command parseCommand(XMLStreamReader reader) throws Exception {
@@ -218,6 +298,10 @@ public class GLStaxParser {
                     case "param" -> {
                         command.params.add( parseParam(reader) );
                     }
+                    case "alias" -> {
+                        // <alias name="glActiveTexture"/>
+                        command.alias = reader.getAttributeValue(null, "name");
+                    }
                     case "glx" -> {
 
                     }
@@ -435,9 +519,15 @@ public class GLStaxParser {
         // gltype -> ctype
         Map<String, String> types = new HashMap<>();
 
+        // gltype -> C typedef, for function pointer types (GLDEBUGPROC)
+        Map<String, String> funcTypes = new LinkedHashMap<>();
+
         // enumName => hex value
         Map<String, String> enums = new HashMap<>();
 
+        // enum group => enumNames (an enum can be in several groups)
+        Map<String, Set<String>> enumGroups = new HashMap<>();
+
         Map<String, Feature> features = new HashMap<>();
 
         Map<String, Extension> extensions = new HashMap<>();
@@ -486,10 +576,10 @@ public class GLStaxParser {
             if (reader.isStartElement()) {
                 switch(reader.getLocalName()) {
                     case "types" -> {
-
+                        registry.funcTypes.putAll( parseFuncTypes(reader) );
                     }
                     case "enums" -> {
-                        registry.enums.putAll( parseEnums(reader) );
+                        registry.enums.putAll( parseEnums(reader, registry.enumGroups) );
                     }
                     case "commands" -> {
                         registry.commands.putAll( parseCommands(reader) );
@@ -637,6 +727,13 @@ public class GLStaxParser {
         return version;
     }
 
+    // does an extension's 'supported' list (api1|api2|api3) include the api
+    static boolean supports(String supported, String apiName) {
+        return supported.equals(apiName)
+            || supported.endsWith("|"+apiName)
+            || supported.contains(apiName+"|");
+    }
+
     static Map<String, Api> link(Registry registry) {
 
         Map<String, Api> apis = new HashMap<>();
@@ -667,9 +764,7 @@ public class GLStaxParser {
             registry.extensions.forEach((extName, extension) -> {
 
                 // is the extension supported by this API?
-                if ( extension.supported.equals(api.name)
-                    || extension.supported.endsWith("|"+api.name)
-                    || extension.supported.contains(api.name+"|") ) {
+                if ( supports(extension.supported, api.name) ) {
 
                     api.extensions.add(extension);
                 }
@@ -683,9 +778,16 @@ public class GLStaxParser {
     static class ApiExtension {
         String name;
         ApiSlice requires;
+        boolean guaranteed; // present on every device of the fleet (see Fleet)
     }
 
     static List<ApiExtension> linkExtensions(Api api, String profile, Set<String> extensionFilter) {
+        return linkExtensions(api, profile, extensionFilter, null);
+    }
+
+    // guaranteed: optional names of extensions known to be present, so the runtime
+    //             doesn't need to check the extension list for them
+    static List<ApiExtension> linkExtensions(Api api, String profile, Set<String> extensionFilter, Set<String> guaranteed) {
         List<ApiExtension> apiExts = new ArrayList<>();
 
         api.extensions.forEach(extension -> {
@@ -698,6 +800,7 @@ public class GLStaxParser {
             var apiExt = new ApiExtension();
             apiExt.name = extension.name;
             apiExt.requires = new ApiSlice();
+            apiExt.guaranteed = guaranteed != null && guaranteed.contains(extension.name);
 
             for (var require : extension.requires) {
                 if (require.profile == null || require.profile.equals(profile)) {
@@ -741,6 +844,578 @@ public class GLStaxParser {
         return apiVersions;
     }
 
+    // extension lists captured from the devices/drivers we ship on, one file per device:
+    //
+    //   # comment
+    //   version 4.6
+    //   GL_ARB_buffer_storage
+    //   GL_ARB_debug_output ...
+    //
+    // (one or more names per line, so a glGetStringi dump or a single glGetString(GL_EXTENSIONS)
+    //  line both work).  Extensions on any device are generated, extensions on every
+    //  device are guaranteed, and the oldest 'version' is the fleet's minimum context
+    static class Fleet {
+        List<Set<String>> devices = new ArrayList<>();
+        String minVersion; // null if no device file has a 'version' line
+
+        static Fleet read(List<File> files) throws Exception {
+            Fleet fleet = new Fleet();
+            for (File file : files) {
+                Set<String> device = new HashSet<>();
+                for (String line : Files.readAllLines(file.toPath())) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\\s+");
+                    if (fields[0].equals("version")) {
+                        if (fields.length != 2 || !fields[1].matches("\\d+\\.\\d+")) {
+                            throw new IllegalArgumentException(file + ": expected 'version major.minor': " + line);
+                        }
+                        if (fleet.minVersion == null || compareVersions(fields[1], fleet.minVersion) < 0) {
+                            fleet.minVersion = fields[1];
+                        }
+                        continue;
+                    }
+                    device.addAll(Arrays.asList(fields));
+                }
+                fleet.devices.add(device);
+            }
+            return fleet;
+        }
+
+        static int compareVersions(String a, String b) {
+            String[] as = a.split("\\.");
+            String[] bs = b.split("\\.");
+            int major = Integer.compare(Integer.parseInt(as[0]), Integer.parseInt(bs[0]));
+            return major != 0 ? major : Integer.compare(Integer.parseInt(as[1]), Integer.parseInt(bs[1]));
+        }
+
+        // present on at least one device
+        Set<String> present() {
+            Set<String> present = new HashSet<>();
+            devices.forEach(present::addAll);
+            return present;
+        }
+
+        // present on every device
+        Set<String> guaranteed() {
+            Set<String> guaranteed = new HashSet<>(devices.isEmpty() ? Set.of() : devices.get(0));
+            devices.forEach(guaranteed::retainAll);
+            return guaranteed;
+        }
+    }
+
+    // profile-guided layout of the most frequently called commands into a single
+    // cache line aligned table (bdgl_fp_hot), shared by all versions/extensions
+    //
+    // each version/extension's hot commands are a contiguous run of the hot table,
+    // loaded through its .hotNames/.hotFuncs manifest (cold commands stay in the
+    // per-version/extension tables)
+    static class HotLayout {
+
+        static final HotLayout NONE = new HotLayout();
+
+        // owner (version/extension name) -> hot commands, in hot table order
+        Map<String, List<String>> owned = new HashMap<>();
+        // command name -> hot table index
+        Map<String, Integer> indices = new HashMap<>();
+
+        List<String> owned(String owner) {
+            return owned.getOrDefault(owner, List.of());
+        }
+
+        int index(String commandName) {
+            return indices.get(commandName);
+        }
+
+        // name/count per line ('#' comments)
+        static Map<String, Long> readProfile(File file) throws Exception {
+            Map<String, Long> profile = new HashMap<>();
+            for (String line : Files.readAllLines(file.toPath())) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("expected 'name count': " + line);
+                }
+                profile.merge(fields[0], Long.parseLong(fields[1]), Long::sum);
+            }
+            return profile;
+        }
+
+        static HotLayout build(Registry registry, List<ApiVersion> versions, List<ApiExtension> extensions,
+            Map<String, Long> profile, int hotLimit) {
+
+            if (profile == null || profile.isEmpty() || hotLimit <= 0) {
+                return NONE;
+            }
+
+            // owners in output order, so a command in several owners goes to the first
+            List<String> ownerNames = new ArrayList<>();
+            List<ApiSlice> ownerSlices = new ArrayList<>();
+            versions.forEach(apiVersion -> {
+                ownerNames.add(apiVersion.feature.name);
+                ownerSlices.add(apiVersion.profile);
+            });
+            extensions.forEach(apiExt -> {
+                ownerNames.add(apiExt.name);
+                ownerSlices.add(apiExt.requires);
+            });
+
+            // hottest generated commands (ties broken by name, for deterministic output)
+            Set<String> generated = new HashSet<>();
+            ownerSlices.forEach(slice -> generated.addAll(slice.commands));
+            List<String> hottest = new ArrayList<>();
+            profile.forEach((commandName, count) -> {
+                if (count > 0 && generated.contains(commandName)) {
+                    hottest.add(commandName);
+                }
+            });
+            hottest.sort((a, b) -> {
+                int cmp = Long.compare(profile.get(b), profile.get(a));
+                return cmp != 0 ? cmp : a.compareTo(b);
+            });
+            Set<String> hotSet = new HashSet<>(hottest.subList(0, Math.min(hotLimit, hottest.size())));
+
+            var layout = new HotLayout();
+            for (int i=0; i<ownerNames.size(); i++) {
+                List<String> ownerHot = new ArrayList<>();
+                for (String commandName : hottest) {
+                    if (hotSet.contains(commandName)
+                        && ownerSlices.get(i).commands.contains(commandName)
+                        && !layout.indices.containsKey(commandName)) {
+
+                        layout.indices.put(commandName, layout.indices.size());
+                        ownerHot.add(commandName);
+                    }
+                }
+                if (!ownerHot.isEmpty()) {
+                    layout.owned.put(ownerNames.get(i), ownerHot);
+                }
+            }
+            return layout;
+        }
+
+        void generateTable(StringBuilder buffer) {
+            if (indices.isEmpty()) {
+                return;
+            }
+            buffer.append("\n// hot commands (from call profile)\n");
+            buffer.append("#ifdef BDGL_IMPL\n");
+            buffer.append("_Alignas(64) void* (*bdgl_fp_hot[").append(indices.size()).append("])();\n");
+            buffer.append("#else\n");
+            buffer.append("extern void* (*bdgl_fp_hot[").append(indices.size()).append("])();\n");
+            buffer.append("#endif\n");
+        }
+
+        void generateManifest(List<String> hotNames, StringBuilder buffer) {
+            if (hotNames.isEmpty()) {
+                return;
+            }
+            buffer.append("  .hotNames = ");
+            for (String commandName : hotNames) {
+                buffer.append('\n').append('"').append(commandName).append("\\0\"");
+            }
+            buffer.append(",\n  .hotFuncs = (void**)&bdgl_fp_hot[").append(index(hotNames.get(0))).append("],\n");
+        }
+    }
+
+    // shadow state for --state-cache (see BDGL_STATE_CACHE in bdgl_suffix.h)
+    //
+    // each cached command keeps the arguments it was last called with (one entry per
+    // key, e.g. glBindBuffer's target) and drops calls that wouldn't change them.
+    // cached and invalidating commands keep their plain wrapper as bdgl_u_<command>,
+    // which the shadow wrapper calls on a miss
+    static class StateCache {
+
+        static final StateCache NONE = new StateCache();
+
+        // commands sharing one entry per key ('glEnable|glDisable' toggles) and the keys:
+        //   param      enum param, one entry per generated enum in its gl.xml group
+        //   param<N    integer param, one entry per value 0 to N-1
+        //   @command   the (single enum) value of another cached command, e.g. the
+        //              active texture unit for glBindTexture
+        // calls with a key outside the entries always go to the driver
+        record Cached(List<String> commands, List<String> keys) {
+            String name() {
+                return commands.get(0);
+            }
+        }
+
+        List<Cached> cached = new ArrayList<>();
+        // command -> cached commands (by name) whose entries it resets when it reaches the driver
+        Map<String, List<String>> invalidates = new LinkedHashMap<>();
+        // commands generated as bdgl_u_<command>
+        Set<String> wrapped = new HashSet<>();
+
+        boolean isEmpty() {
+            return wrapped.isEmpty();
+        }
+
+        boolean wraps(String commandName) {
+            return wrapped.contains(commandName);
+        }
+
+        // 'cache command[|command] [key ...]' or 'invalidate command cached ...' per line ('#' comments)
+        static StateCache read(File file) throws Exception {
+            var state = new StateCache();
+            Set<String> names = new HashSet<>();
+            for (String line : Files.readAllLines(file.toPath())) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                List<String> rest = List.of(fields).subList(Math.min(2, fields.length), fields.length);
+                if (fields.length >= 2 && fields[0].equals("cache")) {
+                    var entry = new Cached(List.of(fields[1].split("\\|")), rest);
+                    for (String key : entry.keys) {
+                        if (key.startsWith("@") && !names.contains(key.substring(1))) {
+                            throw new IllegalArgumentException("key " + key + " must be cached before: " + line);
+                        }
+                    }
+                    names.add(entry.name());
+                    state.cached.add(entry);
+                } else if (fields.length >= 3 && fields[0].equals("invalidate")) {
+                    state.invalidates.computeIfAbsent(fields[1], k -> new ArrayList<>()).addAll(rest);
+                } else {
+                    throw new IllegalArgumentException("expected 'cache command [key ...]' or 'invalidate command cached ...': " + line);
+                }
+            }
+            for (List<String> targets : state.invalidates.values()) {
+                for (String target : targets) {
+                    if (!names.contains(target)) {
+                        throw new IllegalArgumentException("invalidate of a command that isn't cached: " + target);
+                    }
+                }
+            }
+            return state;
+        }
+
+        // the cached/invalidating commands that are generated
+        // (and whose @command keys are)
+        StateCache select(Set<String> generated) {
+            var state = new StateCache();
+            Set<String> names = new HashSet<>();
+            for (Cached entry : cached) {
+                boolean selected = generated.containsAll(entry.commands) && entry.keys.stream()
+                    .allMatch(key -> !key.startsWith("@") || names.contains(key.substring(1)));
+                if (selected) {
+                    names.add(entry.name());
+                    state.cached.add(entry);
+                    state.wrapped.addAll(entry.commands);
+                }
+            }
+            invalidates.forEach((commandName, targets) -> {
+                List<String> selected = targets.stream().filter(names::contains).toList();
+                if (generated.contains(commandName) && !selected.isEmpty()) {
+                    state.invalidates.put(commandName, selected);
+                    state.wrapped.add(commandName);
+                }
+            });
+            return state;
+        }
+
+        // the plain wrapper of a cached/invalidating command is renamed bdgl_u_<command>
+        Command wrap(Command command) {
+            if (!wraps(command.proto.name)) {
+                return command;
+            }
+            var proto = new Proto();
+            proto.ret = command.proto.ret;
+            proto.name = "bdgl_u_" + command.proto.name;
+
+            var renamed = new Command();
+            renamed.proto = proto;
+            renamed.params = command.params;
+            renamed.alias = command.alias;
+            return renamed;
+        }
+
+        // entries of a cached command
+        static class Layout {
+            Cached entry;
+            Command command;
+            List<Param> values = new ArrayList<>();
+            // C expression of each key's entry index (-1: not cached), and its entry count
+            List<String> keyIndices = new ArrayList<>();
+            List<Integer> keySizes = new ArrayList<>();
+
+            int size() {
+                return keySizes.stream().reduce(1, (a, b) -> a * b);
+            }
+        }
+
+        static Param param(Command command, String paramName) {
+            return command.params.stream()
+                .filter(param -> param.name.equals(paramName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(command.proto.name + " has no param: " + paramName));
+        }
+
+        // decls: entry types, bdgl_State and the shadow wrapper prototypes (before bdgl_suffix.h)
+        // impl: key lookups and shadow wrappers (after bdgl_suffix.h)
+        void generate(Map<String, Command> commands, Map<String, String> enums, Map<String, Set<String>> enumGroups,
+            Set<String> selectedEnums, StringBuilder decls, StringBuilder impl) {
+
+            if (isEmpty()) {
+                return;
+            }
+
+            // enum group -> (value -> enum name), for the groups used as keys
+            Map<String, TreeMap<Integer, String>> keyGroups = new TreeMap<>();
+            Map<String, Layout> layouts = new HashMap<>();
+            for (Cached entry : cached) {
+                var layout = new Layout();
+                layout.entry = entry;
+                layout.command = commands.get(entry.name());
+
+                for (String commandName : entry.commands) {
+                    Command command = commands.get(commandName);
+                    if (!command.proto.ret.name.equals("void") || command.proto.ret.pointer) {
+                        throw new IllegalArgumentException("can't cache a command that returns a value: " + commandName);
+                    }
+                    if (!sameParams(command, layout.command)) {
+                        throw new IllegalArgumentException(commandName + " doesn't take the same params as " + entry.name());
+                    }
+                }
+
+                Set<String> keyParams = new HashSet<>();
+                for (String key : entry.keys) {
+                    String group;
+                    if (key.startsWith("@")) {
+                        Layout unit = layouts.get(key.substring(1));
+                        if (!unit.entry.keys.isEmpty() || unit.values.size() != 1 || unit.values.get(0).group == null) {
+                            throw new IllegalArgumentException("key " + key + " must be cached without keys and take a single enum");
+                        }
+                        Param unitParam = unit.values.get(0);
+                        group = unitParam.group;
+                        layout.keyIndices.add("(bdgl_s->entries." + unit.entry.name() + ".set ? bdgl_sk_" + group
+                            + "(bdgl_s->entries." + unit.entry.name() + "." + unitParam.name + ") : -1)");
+                    } else if (key.contains("<")) {
+                        String paramName = key.substring(0, key.indexOf('<'));
+                        int count = Integer.parseInt(key.substring(key.indexOf('<') + 1));
+                        Param param = param(layout.command, paramName);
+                        if (param.type.pointer || param.type.pointerToPointer || param.type.name.equals("GLfloat")
+                            || param.type.name.equals("GLdouble")) {
+                            throw new IllegalArgumentException("key " + key + " of " + entry.name() + " must be an integer");
+                        }
+                        keyParams.add(paramName);
+                        layout.keyIndices.add("((uint64_t)" + paramName + " < " + count + " ? (int)" + paramName + " : -1)");
+                        layout.keySizes.add(count);
+                        continue;
+                    } else {
+                        Param param = param(layout.command, key);
+                        if (param.group == null || param.type.pointer || param.type.pointerToPointer) {
+                            throw new IllegalArgumentException("key " + key + " of " + entry.name() + " must be an enum with a group");
+                        }
+                        group = param.group;
+                        keyParams.add(key);
+                        layout.keyIndices.add("bdgl_sk_" + group + "(" + key + ")");
+                    }
+                    TreeMap<Integer, String> values = keyGroups.computeIfAbsent(group,
+                        k -> CGen.enumGroupValues(enums, enumGroups.getOrDefault(k, Set.of()), selectedEnums));
+                    if (values.isEmpty()) {
+                        throw new IllegalArgumentException("key " + key + " of " + entry.name() + ": no generated enums in group " + group);
+                    }
+                    layout.keySizes.add(values.size());
+                }
+
+                for (Param param : layout.command.params) {
+                    if (keyParams.contains(param.name)) {
+                        continue;
+                    }
+                    if (param.type.pointer || param.type.pointerToPointer) {
+                        throw new IllegalArgumentException("can't cache pointer param " + param.name + " of " + entry.name());
+                    }
+                    layout.values.add(param);
+                }
+                layouts.put(entry.name(), layout);
+            }
+
+            // public: entries, per context state and the shadow wrappers
+            decls.append("\n// shadow state (--state-cache), see bdgl_state_bind\n");
+            decls.append("#define BDGL_STATE_CACHE\n");
+            for (Cached entry : cached) {
+                // typedef struct { uint8_t set; GLuint buffer; } bdgl_se_glBindBuffer;
+                decls.append("typedef struct { uint8_t set;");
+                for (Param param : layouts.get(entry.name()).values) {
+                    decls.append(' ');
+                    CGen.generateType(param.type, decls);
+                    decls.append(' ').append(param.name).append(';');
+                }
+                decls.append(" } bdgl_se_").append(entry.name()).append(";\n");
+            }
+            decls.append("typedef struct {\n");
+            decls.append("  uint64_t hits; // calls dropped\n");
+            decls.append("  uint64_t misses; // calls that went to the driver\n");
+            decls.append("  struct {\n");
+            for (Cached entry : cached) {
+                Layout layout = layouts.get(entry.name());
+                decls.append("    bdgl_se_").append(entry.name()).append(' ').append(entry.name());
+                if (!layout.keySizes.isEmpty()) {
+                    decls.append('[').append(layout.size()).append(']');
+                }
+                decls.append(";\n");
+            }
+            decls.append("  } entries; // set: 0 unknown, else 1 + index of the command that set it\n");
+            decls.append("} bdgl_State;\n");
+            for (String commandName : wrapped.stream().sorted().toList()) {
+                generateSignature(commands.get(commandName), commandName, decls);
+                decls.append(";\n");
+            }
+
+            impl.append("\n#ifdef BDGL_IMPL\n");
+
+            // enum key -> entry index
+            keyGroups.forEach((group, values) -> {
+                impl.append("static int bdgl_sk_").append(group).append("(uint32_t value) {\n");
+                impl.append("  switch (value) {\n");
+                int index = 0;
+                for (var value : values.entrySet()) {
+                    impl.append("  case 0x").append(Integer.toHexString(value.getKey())).append("u: return ").append(index++)
+                        .append("; // ").append(value.getValue()).append('\n');
+                }
+                impl.append("  default: return -1;\n");
+                impl.append("  }\n}\n");
+            });
+
+            for (Cached entry : cached) {
+                Layout layout = layouts.get(entry.name());
+                for (int set=1; set<=entry.commands.size(); set++) {
+                    generateCached(commands.get(entry.commands.get(set - 1)), layout, set, impl);
+                }
+            }
+            invalidates.forEach((commandName, targets) -> {
+                if (layouts.values().stream().anyMatch(layout -> layout.entry.commands.contains(commandName))) {
+                    // reset by the shadow wrapper
+                    return;
+                }
+                Command command = commands.get(commandName);
+                boolean isVoid = command.proto.ret.name.equals("void") && !command.proto.ret.pointer;
+
+                generateSignature(command, commandName, impl);
+                impl.append(" {\n");
+                impl.append("  bdgl_State* bdgl_s = bdgl_state_get();\n");
+                impl.append("  ");
+                if (!isVoid) {
+                    CGen.generateType(command.proto.ret, impl);
+                    impl.append(" bdgl_r = ");
+                }
+                generateCall(command, impl);
+                generateInvalidates(targets, impl);
+                impl.append(isVoid ? "" : "  return bdgl_r;\n");
+                impl.append("}\n");
+            });
+            impl.append("#endif\n");
+        }
+
+        static boolean sameParams(Command a, Command b) {
+            if (a.params.size() != b.params.size()) {
+                return false;
+            }
+            for (int i=0; i<a.params.size(); i++) {
+                Param pa = a.params.get(i);
+                Param pb = b.params.get(i);
+                if (!pa.name.equals(pb.name) || !pa.type.name.equals(pb.type.name)
+                    || pa.type.pointer != pb.type.pointer || pa.type.pointerToPointer != pb.type.pointerToPointer) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static void generateSignature(Command command, String name, StringBuilder buffer) {
+            CGen.generateType(command.proto.ret, buffer);
+            buffer.append(" APIENTRY ").append(name).append('(');
+            for (int i=0; i<command.params.size(); i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                Param param = command.params.get(i);
+                CGen.generateType(param.type, buffer);
+                buffer.append(' ').append(param.name);
+            }
+            buffer.append(')');
+        }
+
+        // bdgl_u_glBindBuffer(target,buffer);
+        static void generateCall(Command command, StringBuilder buffer) {
+            buffer.append("bdgl_u_").append(command.proto.name).append('(');
+            for (int i=0; i<command.params.size(); i++) {
+                buffer.append(i > 0 ? "," : "").append(command.params.get(i).name);
+            }
+            buffer.append(");\n");
+        }
+
+        static void generateInvalidates(List<String> targets, StringBuilder buffer) {
+            for (String target : targets) {
+                buffer.append("  memset(&bdgl_s->entries.").append(target).append(", 0, sizeof(bdgl_s->entries.")
+                    .append(target).append("));\n");
+            }
+        }
+
+        // shadow wrapper, e.g.
+        //   void APIENTRY glBindBuffer(GLenum target,GLuint buffer) {
+        //     ... entry for target ...
+        //     if (bdgl_e && bdgl_e->set == 1 && bdgl_e->buffer == buffer) { hit, return }
+        //     bdgl_u_glBindBuffer(target,buffer);
+        //     ... record buffer ...
+        //   }
+        void generateCached(Command command, Layout layout, int set, StringBuilder buffer) {
+            String name = command.proto.name;
+            String entryName = layout.entry.name();
+
+            generateSignature(command, name, buffer);
+            buffer.append(" {\n");
+            buffer.append("  bdgl_State* bdgl_s = bdgl_state_get();\n");
+            if (layout.keyIndices.isEmpty()) {
+                buffer.append("  bdgl_se_").append(entryName).append("* bdgl_e = &bdgl_s->entries.").append(entryName).append(";\n");
+            } else {
+                // row-major index over the keys, -1 if any key has no entry
+                StringBuilder index = new StringBuilder();
+                StringBuilder valid = new StringBuilder();
+                for (int i=0; i<layout.keyIndices.size(); i++) {
+                    buffer.append("  int bdgl_k").append(i).append(" = ").append(layout.keyIndices.get(i)).append(";\n");
+                    valid.append(i > 0 ? " && " : "").append("bdgl_k").append(i).append(" >= 0");
+                    if (i == 0) {
+                        index.append("bdgl_k0");
+                    } else {
+                        index.insert(0, '(').append(")*").append(layout.keySizes.get(i)).append(" + bdgl_k").append(i);
+                    }
+                }
+                buffer.append("  bdgl_se_").append(entryName).append("* bdgl_e = ").append(valid)
+                    .append(" ? &bdgl_s->entries.").append(entryName).append('[').append(index).append("] : 0;\n");
+            }
+
+            // (without keys there's always an entry)
+            String entryCheck = layout.keyIndices.isEmpty() ? "" : "bdgl_e && ";
+            buffer.append("  if (").append(entryCheck).append("bdgl_e->set == ").append(set);
+            for (Param param : layout.values) {
+                buffer.append(" && bdgl_e->").append(param.name).append(" == ").append(param.name);
+            }
+            buffer.append(") {\n");
+            buffer.append("    bdgl_s->hits++;\n");
+            buffer.append("    return;\n");
+            buffer.append("  }\n");
+            buffer.append("  bdgl_s->misses++;\n");
+            buffer.append("  ");
+            generateCall(command, buffer);
+            generateInvalidates(invalidates.getOrDefault(name, List.of()), buffer);
+            String indent = layout.keyIndices.isEmpty() ? "  " : "    ";
+            buffer.append(layout.keyIndices.isEmpty() ? "" : "  if (bdgl_e) {\n");
+            buffer.append(indent).append("bdgl_e->set = ").append(set).append(";\n");
+            for (Param param : layout.values) {
+                buffer.append(indent).append("bdgl_e->").append(param.name).append(" = ").append(param.name).append(";\n");
+            }
+            buffer.append(layout.keyIndices.isEmpty() ? "" : "  }\n");
+            buffer.append("}\n");
+        }
+    }
+
     public static class CGen {
         public static void generateType(Type type, StringBuilder buffer) {
             if (type.cst) {
@@ -797,156 +1472,1899 @@ public class GLStaxParser {
             buffer.append('\n');
         }
 
-        public static void generateVersion(Registry registry, ApiVersion version, StringBuilder buffer) {
+        // void commands that still have to wait for the driver
+        static final Set<String> SYNC_COMMANDS = Set.of("glFinish");
+
+        // commands whose 'const void*' data is always client memory (buffer uploads).
+        // anywhere else a void pointer can be an offset into a bound buffer (pixel
+        // transfers and glCompressedTex* with GL_PIXEL_UNPACK_BUFFER, indirect draws),
+        // so it can't be copied and the command waits for the driver instead
+        static final Pattern CLIENT_DATA_COMMANDS =
+            Pattern.compile("gl(Named)?Buffer(Data|SubData|Storage)(ARB|EXT)?");
+
+        // 'const void*' params a core profile context only accepts as an offset into a
+        // bound buffer (there are no client vertex, index or indirect arrays), so core
+        // headers queue them by value.  pixel transfers can still read client memory
+        static final Pattern CORE_OFFSET_PARAMS =
+            Pattern.compile("gl(Multi)?Draw(?!\\w*Bindless)\\w*(Elements|Indirect)\\w*\\.(indices|indirect)"
+                + "|glVertexAttrib[IL]?Pointer\\w*\\.pointer");
+
+        // true if 'version' is a core profile (3.2+), see CORE_OFFSET_PARAMS
+        static boolean coreOffsets(ApiVersion version) {
+            return "core".equals(version.profile.profile) && Fleet.compareVersions(version.feature.number, "3.2") >= 0;
+        }
 
-            if (version == null) {
-                throw new IllegalArgumentException("version null");
+        // element count of a const pointer param, as a C expression of the other params
+        // ('4', 'count', 'count*4'), or null if it can't be computed (e.g. COMPSIZE(...))
+        // or it isn't known to point at client memory
+        static String copyCount(Command command, Param param) {
+            if (param.len == null) {
+                return null;
             }
-
-            if (version.previous != null) {
-                // generate previous versions before we emit this one
-                generateVersion(registry, version.previous, buffer);
-            } else {
-                // oldest version, so we're at the top of the output
-                registry.types.forEach((glTypeName, typeName) -> {
-
-                    if (glTypeName != null) {
-                        buffer.append("typedef ").append(typeName).append(" ").append(glTypeName).append(";\n");
-                    } else {
-                        // TODO log unknown type
-                    }
-                });
+            // (shadow state wrappers rename the plain wrapper, see StateCache.wrap)
+            String glName = command.proto.name.replaceFirst("^bdgl_u_", "");
+            if (param.type.name.contains("*")) {
+                // 'const GLchar *const*' parses as a pointer to 'GLchar *const': only the
+                // array of pointers could be copied, not the strings/data they point at
+                return null;
             }
-
-            buffer.append("\n//").append(version.feature.name).append('\n');
-
-            // enums
-            for (String enumName : version.profile.enums) {
-                String enumValue = registry.enums.get(enumName);
-                buffer.append("#define ").append(enumName).append(" ").append(enumValue).append('\n');
+            if (param.type.name.equals("void") && !CLIENT_DATA_COMMANDS.matcher(glName).matches()) {
+                return null;
             }
-
-            // need a deterministic/indexable command list
-            List<String> commandNames = new ArrayList<>();
-            version.profile.commands.forEach(cmdName -> commandNames.add(cmdName));
-            commandNames.sort(String.CASE_INSENSITIVE_ORDER);
-
-            // declare per-version function pointer table
-            buffer.append("\n#ifdef BDGL_IMPL\n");
-            buffer.append("void* (*bdgl_fp_").append(version.feature.name).append("[").append(version.profile.commands.size()).append("])();\n");
-
-            buffer.append("bdgl_Version bdgl_").append(version.feature.name).append(" = {\n");
-            buffer.append("  .major = ").append(version.feature.numberMajor).append(",\n");
-            buffer.append("  .minor = ").append(version.feature.numberMinor).append(",\n");
-            buffer.append("  .loaded = 0,\n");
-            buffer.append("  .names = ");
-            for (String commandName : commandNames) {
-                // e.g. "glGetString\0"
-                buffer.append('\n').append('"').append(commandName).append("\\0\"");
+            StringBuilder count = new StringBuilder();
+            String[] factors = param.len.replace(" ", "").split("\\*");
+            if (factors.length > 2) {
+                return null;
             }
-            buffer.append(",\n .funcs = (void**)bdgl_fp_").append(version.feature.name).append(",\n");
-            buffer.append("};\n");
-
-            buffer.append("#else\n");
-            buffer.append("extern bdgl_Version bdgl_").append(version.feature.name).append(";\n");
-            buffer.append("#endif\n");
-
-            // example:
-            // #define bdgl_glClear(f) void f(GLbitfield mask)
-            for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
-                String commandName = commandNames.get(commandIndex);
-                Command command = registry.commands.get(commandName);
-
-                generateCommand(command, version.feature.name, commandIndex, buffer);
+            for (String factor : factors) {
+                if (count.length() > 0) {
+                    count.append('*');
+                }
+                if (factor.matches("\\d+")) {
+                    count.append(factor);
+                    continue;
+                }
+                Param lenParam = command.params.stream()
+                    .filter(other -> other.name.equals(factor))
+                    .findFirst().orElse(null);
+                if (lenParam == null || lenParam.type.pointer || lenParam.type.pointerToPointer) {
+                    return null;
+                }
+                count.append("(size_t)").append(factor);
             }
+            return count.toString();
         }
 
-        public static void generateHeader(Registry registry, ApiVersion version, List<ApiExtension> extensions, StringBuilder buffer) throws Exception {
-
-            // prefix
-            buffer.append( Files.readString(new File("src/bdgl_prefix.h").toPath()) );
+        // queue marshalling function for --threaded (see bdgl_queue_alloc/bdgl_queue_call)
+        //
+        // every command gets an args struct and an exec function that calls the driver
+        // with it.  void commands whose pointer params are const with a computable
+        // length are queued (with the pointed to data copied into the packet), anything
+        // else waits for the worker to run it
+        // coreOffsets: pass CORE_OFFSET_PARAMS by value (see coreOffsets)
+        static void generateQueuedCommand(Command command, String fpName, int commandIndex, boolean coreOffsets,
+            StringBuilder buffer) {
+
+            String name = command.proto.name;
+            String glName = name.replaceFirst("^bdgl_u_", "");
+            boolean isVoid = command.proto.ret.name.equals("void") && !command.proto.ret.pointer;
+
+            Map<Param, String> copies = new HashMap<>();
+            boolean queued = isVoid && !SYNC_COMMANDS.contains(name);
+            for (Param param : command.params) {
+                if (!param.type.pointer && !param.type.pointerToPointer) {
+                    continue;
+                }
+                String count = param.type.cst && !param.type.pointerToPointer ? copyCount(command, param) : null;
+                if (count == null && coreOffsets && param.type.cst && param.type.name.equals("void")
+                    && CORE_OFFSET_PARAMS.matcher(glName + "." + param.name).matches()) {
+                    continue;
+                }
+                if (count == null) {
+                    queued = false;
+                } else {
+                    copies.put(param, count);
+                }
+            }
 
-            generateVersion(registry, version, buffer);
+            buffer.append("\n// ").append(name).append(queued ? "" : " (sync)").append('\n');
 
-            // TODO better type parsing -- a lot of extensions reference custom types
-            //      parse <name> child tag from <type> parent
-            //      then just conver the whole element to text to get the typedef
-            //
+            // typedef struct { GLenum target; GLuint buffer; } bdgl_q_glBindBuffer;
+            buffer.append("typedef struct {");
+            for (Param param : command.params) {
+                buffer.append(' ');
+                generateType(param.type, buffer);
+                buffer.append(' ').append(param.name).append(';');
+            }
+            if (!isVoid) {
+                buffer.append(' ');
+                generateType(command.proto.ret, buffer);
+                buffer.append(" bdgl_ret;");
+            } else if (command.params.isEmpty()) {
+                buffer.append(" uint8_t unused;");
+            }
+            buffer.append(" } bdgl_q_").append(name).append(";\n");
+
+            // static void bdgl_x_glBindBuffer(void* p) { ... driver call ... }
+            buffer.append("static void bdgl_x_").append(name).append("(void* p) {\n");
+            buffer.append("  bdgl_q_").append(name).append("* a = (bdgl_q_").append(name).append("*)p;\n");
+            buffer.append(isVoid && command.params.isEmpty() ? "  (void)a;\n" : "");
+            buffer.append("  ").append(isVoid ? "" : "a->bdgl_ret = ").append("((");
+            generateType(command.proto.ret, buffer);
+            buffer.append(" (*)(");
+            for (int i=0; i<command.params.size(); i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                generateType(command.params.get(i).type, buffer);
+            }
+            buffer.append("))bdgl_fp_").append(fpName).append('[').append(commandIndex).append("])(");
+            for (int i=0; i<command.params.size(); i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                buffer.append("a->").append(command.params.get(i).name);
+            }
+            buffer.append(");\n}\n");
+
+            // the command itself
+            if (isVoid) {
+                buffer.append("void");
+            } else {
+                generateType(command.proto.ret, buffer);
+            }
+            buffer.append(" APIENTRY ").append(name).append('(');
+            for (int i=0; i<command.params.size(); i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                Param param = command.params.get(i);
+                generateType(param.type, buffer);
+                buffer.append(' ').append(param.name);
+            }
+            buffer.append(") {\n");
+
+            StringBuilder args = new StringBuilder();
+            for (int i=0; i<command.params.size(); i++) {
+                args.append(i > 0 ? ", " : "").append(command.params.get(i).name);
+            }
+            String argsInit = command.params.isEmpty() ? "0" : args.toString();
+
+            if (queued) {
+                StringBuilder dataSize = new StringBuilder();
+                for (Param param : command.params) {
+                    String count = copies.get(param);
+                    if (count == null) {
+                        continue;
+                    }
+                    String elementSize = param.type.name.equals("void") ? "1" : "sizeof(" + param.type.name + ")";
+                    buffer.append("  size_t bdgl_").append(param.name).append("_size = ").append(param.name).append(" ? ")
+                        .append(count).append('*').append(elementSize).append(" : 0;\n");
+                    dataSize.append(dataSize.length() > 0 ? " + " : "").append("bdgl_queue_data(bdgl_").append(param.name).append("_size)");
+                }
+                buffer.append("  bdgl_q_").append(name).append("* bdgl_a = (bdgl_q_").append(name).append("*)bdgl_queue_alloc(bdgl_x_")
+                    .append(name).append(", sizeof(*bdgl_a), ").append(dataSize.length() > 0 ? dataSize : "0").append(");\n");
+                buffer.append("  if (bdgl_a == 0) {\n");
+                buffer.append("    bdgl_q_").append(name).append(" bdgl_args = { ").append(argsInit).append(" };\n");
+                buffer.append("    bdgl_queue_call(bdgl_x_").append(name).append(", &bdgl_args);\n");
+                buffer.append("    return;\n");
+                buffer.append("  }\n");
+                if (!copies.isEmpty()) {
+                    buffer.append("  uint8_t* bdgl_data = (uint8_t*)bdgl_a + BDGL_QUEUE_SIZE(sizeof(*bdgl_a));\n");
+                }
+                for (Param param : command.params) {
+                    if (copies.containsKey(param)) {
+                        // copied into the packet, so the caller can reuse its memory right away
+                        buffer.append("  bdgl_a->").append(param.name).append(" = ").append(param.name).append(" ? memcpy(bdgl_data, ")
+                            .append(param.name).append(", bdgl_").append(param.name).append("_size) : 0;\n");
+                        buffer.append("  bdgl_data += bdgl_queue_data(bdgl_").append(param.name).append("_size);\n");
+                    } else {
+                        buffer.append("  bdgl_a->").append(param.name).append(" = ").append(param.name).append(";\n");
+                    }
+                }
+                buffer.append("  bdgl_queue_commit();\n");
+            } else {
+                buffer.append("  bdgl_q_").append(name).append(" bdgl_args = { ").append(argsInit).append(" };\n");
+                buffer.append("  bdgl_queue_call(bdgl_x_").append(name).append(", &bdgl_args);\n");
+                if (!isVoid) {
+                    buffer.append("  return bdgl_args.bdgl_ret;\n");
+                }
+            }
+            buffer.append("}\n");
+        }
+
+        // --threaded marshalling functions, for every command in the header
+        static void generateQueuedCommands(Registry registry, List<ApiVersion> versions, List<ApiExtension> extensions,
+            HotLayout hot, StateCache state, StringBuilder buffer) {
+
+            boolean coreOffsets = coreOffsets(versions.get(versions.size() - 1));
+            Map<String, String> owners = wrapperOwners(versions, extensions);
+            List<String> ownerNames = new ArrayList<>();
+            List<ApiSlice> ownerSlices = new ArrayList<>();
+            versions.forEach(apiVersion -> {
+                ownerNames.add(apiVersion.feature.name);
+                ownerSlices.add(apiVersion.profile);
+            });
+            extensions.forEach(apiExt -> {
+                ownerNames.add(apiExt.name);
+                ownerSlices.add(apiExt.requires);
+            });
+
+            buffer.append("\n#ifdef BDGL_IMPL\n");
+            for (int owner=0; owner<ownerNames.size(); owner++) {
+                List<String> hotNames = hot.owned(ownerNames.get(owner));
+                List<String> commandNames = coldCommands(ownerSlices.get(owner), hotNames);
+                for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
+                    if (!owners.get(commandNames.get(commandIndex)).equals(ownerNames.get(owner))) {
+                        continue;
+                    }
+                    generateQueuedCommand(state.wrap(registry.commands.get(commandNames.get(commandIndex))), ownerNames.get(owner), commandIndex, coreOffsets, buffer);
+                }
+                for (String commandName : hotNames) {
+                    generateQueuedCommand(state.wrap(registry.commands.get(commandName)), "hot", hot.index(commandName), coreOffsets, buffer);
+                }
+            }
+            buffer.append("#endif\n");
+        }
+
+        public static void generateTypes(Registry registry, StringBuilder buffer) {
+            registry.types.forEach((glTypeName, typeName) -> {
+
+                if (glTypeName != null) {
+                    buffer.append("typedef ").append(typeName).append(" ").append(glTypeName).append(";\n");
+                } else {
+                    // TODO log unknown type
+                }
+            });
+            // function pointer types last, they use the types above
+            registry.funcTypes.values().forEach(typedef -> buffer.append(typedef).append('\n'));
+        }
+
+        public static void generateVersion(Registry registry, ApiVersion version, StringBuilder buffer) {
+
+            if (version == null) {
+                throw new IllegalArgumentException("version null");
+            }
+
+            if (version.previous != null) {
+                // generate previous versions before we emit this one
+                generateVersion(registry, version.previous, buffer);
+            } else {
+                // oldest version, so we're at the top of the output
+                generateTypes(registry, buffer);
+            }
+
+            generateVersionBlock(registry, version, buffer);
+        }
+
+        // commands of a version/extension that go in its own table, in table order
+        static List<String> coldCommands(ApiSlice slice, List<String> hotNames) {
+            List<String> commandNames = new ArrayList<>();
+            slice.commands.forEach(cmdName -> commandNames.add(cmdName));
+            commandNames.removeAll(hotNames);
+            commandNames.sort(String.CASE_INSENSITIVE_ORDER);
+            return commandNames;
+        }
+
+        // command name -> the first version/extension (in output order) that has it.
+        // only that owner gets the command's wrapper, so a command shared with a selected
+        // version (e.g. glBindFramebuffer in GL_VERSION_3_0 and GL_ARB_framebuffer_object)
+        // is defined once and calls through the version's table.  the other owners still
+        // load it into their own table (and the shared hot table already has one owner)
+        static Map<String, String> wrapperOwners(List<ApiVersion> versions, List<ApiExtension> extensions) {
+            Map<String, String> owners = new HashMap<>();
+            versions.forEach(apiVersion -> apiVersion.profile.commands
+                .forEach(commandName -> owners.putIfAbsent(commandName, apiVersion.feature.name)));
+            extensions.forEach(apiExt -> apiExt.requires.commands
+                .forEach(commandName -> owners.putIfAbsent(commandName, apiExt.name)));
+            return owners;
+        }
+
+        // per-version function pointer table and bdgl_Version manifest
+        static void generateVersionManifest(ApiVersion version, List<String> commandNames, List<String> hotNames,
+            HotLayout hot, StringBuilder buffer) {
+
+            int commandCount = commandNames.size();
+
+            // declare per-version function pointer table
+            buffer.append("\n#ifdef BDGL_IMPL\n");
+            if (commandCount > 0) {
+                buffer.append("void* (*bdgl_fp_").append(version.feature.name).append("[").append(commandCount).append("])();\n");
+            }
+
+            buffer.append("bdgl_Version bdgl_").append(version.feature.name).append(" = {\n");
+            buffer.append("  .major = ").append(version.feature.numberMajor).append(",\n");
+            buffer.append("  .minor = ").append(version.feature.numberMinor).append(",\n");
+            buffer.append("  .loaded = 0,\n");
+            buffer.append("  .names = ");
+            if (commandCount > 0) {
+                for (String commandName : commandNames) {
+                    // e.g. "glGetString\0"
+                    buffer.append('\n').append('"').append(commandName).append("\\0\"");
+                }
+                buffer.append(",\n .funcs = (void**)bdgl_fp_").append(version.feature.name).append(",\n");
+            } else {
+                // every command is in the hot table
+                buffer.append("\"\"");
+                buffer.append(",\n .funcs = 0,\n");
+            }
+            hot.generateManifest(hotNames, buffer);
+            buffer.append("};\n");
+
+            buffer.append("#else\n");
+            if (commandCount > 0) {
+                buffer.append("extern void* (*bdgl_fp_").append(version.feature.name).append("[").append(commandCount).append("])();\n");
+            }
+            buffer.append("extern bdgl_Version bdgl_").append(version.feature.name).append(";\n");
+            buffer.append("#endif\n");
+        }
+
+        // per-extension function pointer table and bdgl_Extension manifest
+        static void generateExtensionManifest(ApiExtension apiExt, List<String> commandNames, List<String> hotNames,
+            HotLayout hot, StringBuilder buffer) {
+
+            int commandCount = commandNames.size();
+
+            buffer.append("\n#ifdef BDGL_IMPL\n");
+
+            // declare per-extension function pointer table
+            if (commandCount > 0) {
+                // only write the FP table if we have commands
+                // (if not, we'll use a null pointer below)
+                buffer.append("void* (*bdgl_fp_").append(apiExt.name).append("[").append(commandCount).append("])();\n");
+            }
+
+            buffer.append("bdgl_Extension bdgl_").append(apiExt.name).append(" = {\n");
+            buffer.append("  .loaded = 0,\n");
+            if (apiExt.guaranteed) {
+                // on every fleet device, no need to check the extension list
+                buffer.append("  .present = 1,\n");
+            }
+            buffer.append("  .name = \"").append(apiExt.name).append("\",\n");
+            buffer.append("  .names = ");
+            if (commandCount > 0) {
+                for (String commandName : commandNames) {
+                    // e.g. "glGetString\0"
+                    buffer.append('\n').append('"').append(commandName).append("\\0\"");
+                }
+                buffer.append(",\n  .funcs = (void**)bdgl_fp_").append(apiExt.name).append(",\n");
+            } else {
+                // if we don't have any commands, we need an empty 'names' string
+                // and a null pointer to the function pointers array
+                buffer.append("\"\"");
+                buffer.append(",\n  .funcs = 0,\n");
+            }
+            hot.generateManifest(hotNames, buffer);
+            buffer.append("};\n");
+
+            buffer.append("#else\n");
+            if (commandCount > 0) {
+                // referenced by the wrappers in BDGL_INLINE mode
+                buffer.append("extern void* (*bdgl_fp_").append(apiExt.name).append("[").append(commandCount).append("])();\n");
+            }
+            buffer.append("extern bdgl_Extension bdgl_").append(apiExt.name).append(";\n");
+            buffer.append("#endif\n");
+        }
+
+        // emits a single version (without any of its previous versions)
+        static void generateVersionBlock(Registry registry, ApiVersion version, StringBuilder buffer) {
+            generateVersionBlock(registry, version, HotLayout.NONE, buffer);
+        }
+
+        static void generateVersionBlock(Registry registry, ApiVersion version, HotLayout hot, StringBuilder buffer) {
+            generateVersionBlock(registry, version, hot, StateCache.NONE, buffer);
+        }
+
+        static void generateVersionBlock(Registry registry, ApiVersion version, HotLayout hot, StateCache state,
+            StringBuilder buffer) {
+            generateVersionBlock(registry, version, hot, state, null, buffer);
+        }
+
+        // owners: optional, only generate wrappers for the commands this version owns (see wrapperOwners)
+        static void generateVersionBlock(Registry registry, ApiVersion version, HotLayout hot, StateCache state,
+            Map<String, String> owners, StringBuilder buffer) {
+
+            buffer.append("\n//").append(version.feature.name).append('\n');
+
+            // enums
+            for (String enumName : version.profile.enums) {
+                String enumValue = registry.enums.get(enumName);
+                buffer.append("#define ").append(enumName).append(" ").append(enumValue).append('\n');
+            }
+
+            // need a deterministic/indexable command list
+            // (hot commands live in the shared hot table instead)
+            List<String> hotNames = hot.owned(version.feature.name);
+            List<String> commandNames = coldCommands(version.profile, hotNames);
+
+            generateVersionManifest(version, commandNames, hotNames, hot, buffer);
+
+            // example:
+            // #define bdgl_glClear(f) void f(GLbitfield mask)
+            for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
+                String commandName = commandNames.get(commandIndex);
+                Command command = registry.commands.get(commandName);
+                if (owners != null && !owners.get(commandName).equals(version.feature.name)) {
+                    continue;
+                }
+
+                generateCommand(state.wrap(command), version.feature.name, commandIndex, buffer);
+            }
+            for (String commandName : hotNames) {
+                generateCommand(state.wrap(registry.commands.get(commandName)), "hot", hot.index(commandName), buffer);
+            }
+        }
+
+        static void generateExtension(Registry registry, ApiExtension apiExt, StringBuilder buffer) {
+            generateExtension(registry, apiExt, HotLayout.NONE, buffer);
+        }
+
+        static void generateExtension(Registry registry, ApiExtension apiExt, HotLayout hot, StringBuilder buffer) {
+            generateExtension(registry, apiExt, hot, StateCache.NONE, buffer);
+        }
+
+        static void generateExtension(Registry registry, ApiExtension apiExt, HotLayout hot, StateCache state,
+            StringBuilder buffer) {
+            generateExtension(registry, apiExt, hot, state, null, buffer);
+        }
+
+        // owners: optional, only generate wrappers for the commands this extension owns (see wrapperOwners)
+        static void generateExtension(Registry registry, ApiExtension apiExt, HotLayout hot, StateCache state,
+            Map<String, String> owners, StringBuilder buffer) {
+
+            buffer.append("\n//").append(apiExt.name).append('\n');
+
+            for (String enumName : apiExt.requires.enums) {
+                String enumValue = registry.enums.get(enumName);
+                buffer.append("#define ").append(enumName).append(" ").append(enumValue).append('\n');
+            }
+
+            // need a deterministic/indexable command list
+            // (hot commands live in the shared hot table instead)
+            List<String> hotNames = hot.owned(apiExt.name);
+            List<String> commandNames = coldCommands(apiExt.requires, hotNames);
+
+            generateExtensionManifest(apiExt, commandNames, hotNames, hot, buffer);
+
+            for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
+                String commandName = commandNames.get(commandIndex);
+
+                Command command = registry.commands.get(commandName);
+                if (command == null) {
+                    throw new IllegalStateException("Extension '"+apiExt.name+"' reference non-existent command: " + commandName);
+                }
+                if (owners != null && !owners.get(commandName).equals(apiExt.name)) {
+                    continue;
+                }
+
+                generateCommand(state.wrap(command), apiExt.name, commandIndex, buffer);
+            }
+            for (String commandName : hotNames) {
+                generateCommand(state.wrap(registry.commands.get(commandName)), "hot", hot.index(commandName), buffer);
+            }
+        }
+
+        // list of all generated extensions (indexed by the capability cache bitmap)
+        // and a fingerprint of the generated versions/extensions, so a cache
+        // written by a different header is never applied
+        static void generateExtensionList(List<ApiVersion> versions, List<ApiExtension> extensions, StringBuilder buffer) {
+
+            // FNV-1a 64
+            long fingerprint = 0xcbf29ce484222325L;
+            List<String> names = new ArrayList<>();
+            versions.forEach(apiVersion -> names.add(apiVersion.feature.name));
+            extensions.forEach(apiExt -> names.add(apiExt.name));
+            for (String name : names) {
+                for (byte b : (name + '\0').getBytes(StandardCharsets.UTF_8)) {
+                    fingerprint ^= (b & 0xff);
+                    fingerprint *= 0x100000001b3L;
+                }
+            }
+
+            buffer.append("\n#define BDGL_FINGERPRINT 0x").append(Long.toHexString(fingerprint)).append("ull\n");
+            buffer.append("#define BDGL_EXTENSION_COUNT ").append(extensions.size()).append('\n');
+
+            buffer.append("#ifdef BDGL_IMPL\n");
+            buffer.append("bdgl_Extension* bdgl_extensions[BDGL_EXTENSION_COUNT+1] = {\n");
+            for (var apiExt : extensions) {
+                buffer.append("  &bdgl_").append(apiExt.name).append(",\n");
+            }
+            buffer.append("  0\n};\n");
+            buffer.append("#else\n");
+            buffer.append("extern bdgl_Extension* bdgl_extensions[BDGL_EXTENSION_COUNT+1];\n");
+            buffer.append("#endif\n");
+        }
+
+        // bdgl_enum_name hash constants (must match bdgl_suffix.h)
+        static final int ENUM_BUCKET_HASH = 0x9E3779B1;
+        static final int ENUM_SLOT_HASH = 0x85EBCA6B;
+
+        // value -> enum name of a group's generated GLenum values
+        static TreeMap<Integer, String> enumGroupValues(Map<String, String> enums, Set<String> groupEnums,
+            Set<String> selectedEnums) {
+
+            TreeMap<Integer, String> values = new TreeMap<>();
+            for (String enumName : groupEnums) {
+                String enumValue = enums.get(enumName);
+                if (!selectedEnums.contains(enumName) || enumValue == null) {
+                    continue;
+                }
+                boolean hex = enumValue.startsWith("0x") || enumValue.startsWith("0X");
+                if (hex && enumValue.length() > 10) {
+                    // 64-bit, e.g. GL_TIMEOUT_IGNORED, not a GLenum
+                    continue;
+                }
+                long value = Long.decode(enumValue);
+                if (value < Integer.MIN_VALUE || value > 0xFFFFFFFFL) {
+                    continue;
+                }
+                values.merge((int) value, enumName, CGen::preferredEnumName);
+            }
+            return values;
+        }
+
+        // value -> name tables for each enum group with selected enums (see bdgl_enum_name)
+        //
+        // each group gets a (hash and displace) perfect hash table: values are split into
+        // buckets, and each bucket gets a displacement so that
+        //   ((value ^ disp[bucket]) * ENUM_SLOT_HASH) >> shift
+        // maps every value in the group to its own slot, so a lookup is two multiplies and
+        // one compare.  a value shared by several enums in the same group (aliases, vendor
+        // suffixes) maps to the shortest name
+        static void generateEnumGroups(Map<String, String> enums, Map<String, Set<String>> enumGroups,
+            Set<String> selectedEnums, StringBuilder buffer) {
+
+            // group name -> (value -> enum name)
+            Map<String, TreeMap<Integer, String>> groups = new TreeMap<>();
+            enumGroups.forEach((groupName, groupEnums) -> {
+                TreeMap<Integer, String> values = enumGroupValues(enums, groupEnums, selectedEnums);
+                if (!values.isEmpty()) {
+                    groups.put(groupName, values);
+                }
+            });
+
+            buffer.append("\n// enum groups, for bdgl_enum_name(BDGL_ENUM_GROUP_x, value)\n");
+            buffer.append("#define BDGL_ENUM_GROUP_COUNT ").append(groups.size()).append('\n');
+            int groupIndex = 0;
+            for (String groupName : groups.keySet()) {
+                buffer.append("#define BDGL_ENUM_GROUP_").append(groupName).append(' ').append(groupIndex++).append('\n');
+            }
+            if (groups.isEmpty()) {
+                return;
+            }
+
+            // names table, index 0 is reserved for empty slots
+            // (one literal per name: a single pooled literal outgrows the string length
+            // compilers have to support, 4095 in C99 and 64KB in MSVC)
+            Map<String, Integer> nameIndices = new HashMap<>();
+            StringBuilder names = new StringBuilder();
+
+            StringBuilder groupTable = new StringBuilder();
+            StringBuilder slotTable = new StringBuilder();
+            StringBuilder dispTable = new StringBuilder();
+            int slotCount = 0;
+            int dispCount = 0;
+
+            for (var group : groups.entrySet()) {
+                int[] values = group.getValue().keySet().stream().mapToInt(Integer::intValue).toArray();
+
+                // table size: the values rounded up to a power of 2, half as many buckets,
+                // grown until every bucket can be placed
+                int bits = 1;
+                while ((1 << bits) < values.length) {
+                    bits++;
+                }
+                int[][] table;
+                while ((table = perfectHash(values, bits, Math.max(1, bits-1))) == null) {
+                    bits++;
+                }
+                int[] slots = table[0];
+                int[] disp = table[1];
+
+                groupTable.append("  { ").append(slotCount).append(", ").append(dispCount).append(", ")
+                    .append(32 - bits).append(", ").append(32 - Math.max(1, bits-1))
+                    .append(" }, // ").append(group.getKey()).append('\n');
+
+                for (int slot=0; slot<slots.length; slot++) {
+                    slotTable.append(slot % 4 == 0 ? "\n  " : " ");
+                    if (slots[slot] < 0) {
+                        slotTable.append("{0,0},");
+                        continue;
+                    }
+                    int value = values[slots[slot]];
+                    String enumName = group.getValue().get(value);
+                    Integer nameIndex = nameIndices.get(enumName);
+                    if (nameIndex == null) {
+                        nameIndex = nameIndices.size() + 1;
+                        nameIndices.put(enumName, nameIndex);
+                        names.append("\n  \"").append(enumName).append("\",");
+                    }
+                    slotTable.append("{0x").append(Integer.toHexString(value)).append("u,").append(nameIndex).append("},");
+                }
+                for (int bucket=0; bucket<disp.length; bucket++) {
+                    dispTable.append((dispCount + bucket) % 16 == 0 ? "\n  " : " ").append(disp[bucket]).append(',');
+                }
+                slotCount += slots.length;
+                dispCount += disp.length;
+            }
+
+            buffer.append("#ifdef BDGL_IMPL\n");
+            buffer.append("static const char* const bdgl_enum_names[").append(nameIndices.size() + 1).append("] = {\n  0,").append(names).append("\n};\n");
+            buffer.append("static const bdgl_EnumSlot bdgl_enum_slots[").append(slotCount).append("] = {").append(slotTable).append("\n};\n");
+            buffer.append("static const uint16_t bdgl_enum_disp[").append(dispCount).append("] = {").append(dispTable).append("\n};\n");
+            buffer.append("static const bdgl_EnumGroup bdgl_enum_groups[BDGL_ENUM_GROUP_COUNT] = {\n").append(groupTable).append("};\n");
+            buffer.append("#endif\n");
+        }
+
+        // shortest name (usually the one without a vendor suffix), then alphabetical
+        static String preferredEnumName(String a, String b) {
+            if (a.length() != b.length()) {
+                return a.length() < b.length() ? a : b;
+            }
+            return a.compareTo(b) < 0 ? a : b;
+        }
+
+        // [slot -> index into values (-1: empty), bucket -> displacement],
+        // or null if a bucket couldn't be placed
+        static int[][] perfectHash(int[] values, int bits, int bucketBits) {
+            List<List<Integer>> buckets = new ArrayList<>();
+            for (int bucket=0; bucket<(1 << bucketBits); bucket++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (int i=0; i<values.length; i++) {
+                buckets.get((values[i] * ENUM_BUCKET_HASH) >>> (32 - bucketBits)).add(i);
+            }
+
+            // place the largest buckets first, while most slots are free
+            List<Integer> order = new ArrayList<>();
+            for (int bucket=0; bucket<buckets.size(); bucket++) {
+                order.add(bucket);
+            }
+            order.sort((a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+            int[] slots = new int[1 << bits];
+            Arrays.fill(slots, -1);
+            int[] disp = new int[1 << bucketBits];
+            int[] placed = new int[values.length];
+
+            for (int bucket : order) {
+                List<Integer> members = buckets.get(bucket);
+                if (members.isEmpty()) {
+                    break;
+                }
+                boolean found = false;
+                for (int d=0; d<=0xFFFF && !found; d++) {
+                    found = true;
+                    for (int m=0; m<members.size() && found; m++) {
+                        int slot = ((values[members.get(m)] ^ d) * ENUM_SLOT_HASH) >>> (32 - bits);
+                        if (slots[slot] >= 0) {
+                            found = false;
+                        }
+                        for (int prev=0; prev<m && found; prev++) {
+                            found = placed[prev] != slot;
+                        }
+                        placed[m] = slot;
+                    }
+                    if (found) {
+                        for (int m=0; m<members.size(); m++) {
+                            slots[placed[m]] = members.get(m);
+                        }
+                        disp[bucket] = d;
+                    }
+                }
+                if (!found) {
+                    return null;
+                }
+            }
+            return new int[][] { slots, disp };
+        }
+
+        public static void generateHeader(Registry registry, ApiVersion version, List<ApiExtension> extensions, StringBuilder buffer) throws Exception {
+            generateHeader(registry, version, extensions, null, 0, buffer);
+        }
+
+        // profile: optional command name -> call count, the 'hotLimit' most called
+        //          commands are moved into the shared hot table
+        public static void generateHeader(Registry registry, ApiVersion version, List<ApiExtension> extensions,
+            Map<String, Long> profile, int hotLimit, StringBuilder buffer) throws Exception {
+            generateHeader(registry, version, extensions, profile, hotLimit, false, buffer);
+        }
+
+        // threaded: generate queue marshalling functions instead of direct wrappers (see BDGL_THREADED)
+        public static void generateHeader(Registry registry, ApiVersion version, List<ApiExtension> extensions,
+            Map<String, Long> profile, int hotLimit, boolean threaded, StringBuilder buffer) throws Exception {
+            generateHeader(registry, version, extensions, profile, hotLimit, threaded, StateCache.NONE, buffer);
+        }
+
+        // stateCache: commands to generate shadow state wrappers for (see BDGL_STATE_CACHE)
+        public static void generateHeader(Registry registry, ApiVersion version, List<ApiExtension> extensions,
+            Map<String, Long> profile, int hotLimit, boolean threaded, StateCache stateCache, StringBuilder buffer) throws Exception {
+
+            if (threaded) {
+                buffer.append("#define BDGL_THREADED\n");
+            }
+
+            // prefix
+            buffer.append( Files.readString(new File("src/bdgl_prefix.h").toPath()) );
+
+            generateTypes(registry, buffer);
+
+            // TODO better type parsing -- a lot of extensions reference custom types
+            //      parse <name> child tag from <type> parent
+            //      then just conver the whole element to text to get the typedef
+            //
+
+            // each version/extension block only reads the (already linked) registry,
+            // so emit them into separate chunks in parallel, then append the chunks
+            // in order (oldest version first, then extensions) so output is deterministic
+            List<ApiVersion> versions = new ArrayList<>();
+            for (ApiVersion versionRef = version; versionRef != null; versionRef = versionRef.previous) {
+                versions.add(0, versionRef);
+            }
+
+            HotLayout hot = HotLayout.build(registry, versions, extensions, profile, hotLimit);
+            hot.generateTable(buffer);
+
+            Set<String> generated = new HashSet<>();
+            versions.forEach(apiVersion -> generated.addAll(apiVersion.profile.commands));
+            extensions.forEach(apiExt -> generated.addAll(apiExt.requires.commands));
+            StateCache state = stateCache.select(generated);
+            Map<String, String> owners = wrapperOwners(versions, extensions);
+
+            List<Consumer<StringBuilder>> blocks = new ArrayList<>();
+            for (var apiVersion : versions) {
+                blocks.add(chunk -> generateVersionBlock(registry, apiVersion, hot, state, owners, chunk));
+            }
+            for (var apiExt : extensions) {
+                blocks.add(chunk -> generateExtension(registry, apiExt, hot, state, owners, chunk));
+            }
+
+            List<StringBuilder> chunks = blocks.parallelStream()
+                .map(block -> {
+                    StringBuilder chunk = new StringBuilder();
+                    block.accept(chunk);
+                    return chunk;
+                })
+                .toList();
+
+            for (StringBuilder chunk : chunks) {
+                buffer.append(chunk);
+            }
+
+            generateExtensionList(versions, extensions, buffer);
+
+            Set<String> selectedEnums = new HashSet<>();
+            versions.forEach(apiVersion -> selectedEnums.addAll(apiVersion.profile.enums));
+            extensions.forEach(apiExt -> selectedEnums.addAll(apiExt.requires.enums));
+            generateEnumGroups(registry.enums, registry.enumGroups, selectedEnums, buffer);
+
+            StringBuilder stateImpl = new StringBuilder();
+            state.generate(registry.commands, registry.enums, registry.enumGroups, selectedEnums, buffer, stateImpl);
+
+            buffer.append( Files.readString(new File("src/bdgl_suffix.h").toPath()) );
+
+            generateLoadAll(version, extensions, buffer);
+
+            if (threaded) {
+                generateQueuedCommands(registry, versions, extensions, hot, state, buffer);
+            }
+            buffer.append(stateImpl);
+        }
+
+        // all versions, plus any guaranteed extensions
+        static void generateLoadAll(ApiVersion version, List<ApiExtension> extensions, StringBuilder buffer) {
+            buffer.append("#ifdef BDGL_IMPL\n");
+            buffer.append("int bdgl_load_all(bdgl_loadproc loadproc) {\n");
+            buffer.append("  return 0 \n");
+
+            ApiVersion versionRef = version;
+            while (versionRef != null) {
+
+                buffer.append("    + bdgl_load_version(&bdgl_").append(versionRef.feature.name)
+                    .append(",loadproc)\n");
+
+                versionRef = versionRef.previous;
+            }
+            for (var apiExt : extensions) {
+                if (apiExt.guaranteed) {
+                    buffer.append("    + bdgl_load_extension(&bdgl_").append(apiExt.name)
+                        .append(",loadproc)\n");
+                }
+            }
+
+            buffer.append(";\n}\n");
+            buffer.append("#endif\n");
+        }
+    }
+
+    // java.lang.foreign (Panama) backend, from the same linked model as CGen
+    //
+    // emits one class per header: each command is a static method invoking the
+    // 'static final' dynamicInvoker of its MutableCallSite, which every version/
+    // extension with the command relinks to its downcall when loaded, so the JIT
+    // can inline the native call (and a call before load just throws)
+    //
+    // the runtime mirrors the C loader (init, loadVersion, loadExtension, loadAll,
+    // haveExt), with Version/Extension manifests mirroring bdgl_Version/bdgl_Extension
+    //
+    // requires Java 22+ (or Java 21 with --enable-preview)
+    public static class JavaGen {
+
+        static final Set<String> KEYWORDS = Set.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "true", "false", "null", "var", "record", "yield");
+
+        // gltype -> [java type, ValueLayout]
+        static final Map<String, String[]> TYPES = new HashMap<>();
+        static {
+            for (String glType : List.of("GLenum", "GLuint", "GLint", "GLbitfield", "GLsizei")) {
+                TYPES.put(glType, new String[] { "int", "JAVA_INT" });
+            }
+            for (String glType : List.of("GLboolean", "GLubyte", "GLbyte", "GLchar")) {
+                TYPES.put(glType, new String[] { "byte", "JAVA_BYTE" });
+            }
+            TYPES.put("GLshort", new String[] { "short", "JAVA_SHORT" });
+            TYPES.put("GLushort", new String[] { "short", "JAVA_SHORT" });
+            TYPES.put("GLfloat", new String[] { "float", "JAVA_FLOAT" });
+            TYPES.put("GLdouble", new String[] { "double", "JAVA_DOUBLE" });
+            TYPES.put("GLint64", new String[] { "long", "JAVA_LONG" });
+            TYPES.put("GLuint64", new String[] { "long", "JAVA_LONG" });
+            // pointer sized integers (64-bit only)
+            TYPES.put("GLintptr", new String[] { "long", "JAVA_LONG" });
+            TYPES.put("GLsizeiptr", new String[] { "long", "JAVA_LONG" });
+            TYPES.put("GLsync", new String[] { "MemorySegment", "ADDRESS" });
+        }
+
+        static final String[] POINTER = { "MemorySegment", "ADDRESS" };
+
+        // java type/layout of a param/return type, or null if it can't be mapped
+        static String[] mapType(Type type) {
+            if (type.pointer || type.pointerToPointer) {
+                return POINTER;
+            }
+            return TYPES.get(type.name);
+        }
+
+        static String identifier(String name) {
+            return KEYWORDS.contains(name) ? name + '_' : name;
+        }
+
+        // java literal for an enum value (hex/decimal, may need to be a long)
+        static String enumLiteral(String value) {
+            boolean hex = value.startsWith("0x") || value.startsWith("0X");
+            if (hex && value.length() > 10) {
+                return "long:" + value + 'L';
+            }
+            if (!hex) {
+                long decimal = Long.parseLong(value);
+                if (decimal < Integer.MIN_VALUE || decimal > Integer.MAX_VALUE) {
+                    return "long:" + value + 'L';
+                }
+            }
+            return "int:" + value;
+        }
+
+        static void generateEnums(Registry registry, Set<String> enumNames, Set<String> emitted, StringBuilder buffer) {
+            List<String> sorted = new ArrayList<>(enumNames);
+            sorted.sort(null);
+            for (String enumName : sorted) {
+                String enumValue = registry.enums.get(enumName);
+                if (enumValue == null || !emitted.add(enumName)) {
+                    continue;
+                }
+                String literal = enumLiteral(enumValue);
+                int split = literal.indexOf(':');
+                buffer.append("    public static final ").append(literal, 0, split).append(' ')
+                    .append(enumName).append(" = ").append(literal.substring(split+1)).append(";\n");
+            }
+        }
+
+        // call site + static method for each command of a version/extension, returns the
+        // Command field of each of its commands (null if it can't be mapped), shared
+        // commands reuse the field of the version/extension that emitted them first
+        static List<String> generateCommands(Registry registry, String owner, List<String> commandNames,
+            Set<String> emitted, StringBuilder buffer) {
+
+            List<String> fields = new ArrayList<>();
+
+            for (String commandName : commandNames) {
+                Command command = registry.commands.get(commandName);
+                if (command == null) {
+                    throw new IllegalStateException("'"+owner+"' references non-existent command: " + commandName);
+                }
+
+                boolean isVoid = command.proto.ret.name.equals("void") && !command.proto.ret.pointer;
+                String[] ret = isVoid ? null : mapType(command.proto.ret);
+                String unmapped = !isVoid && ret == null ? command.proto.ret.name : null;
+                for (Param param : command.params) {
+                    if (unmapped == null && mapType(param.type) == null) {
+                        unmapped = param.type.name;
+                    }
+                }
+                if (unmapped != null) {
+                    buffer.append("    // ").append(commandName).append(": unsupported type ").append(unmapped).append('\n');
+                    fields.add(null);
+                    continue;
+                }
+                fields.add(commandName + "_cmd");
+                if (!emitted.add(commandName)) {
+                    // already emitted by an earlier version/extension
+                    continue;
+                }
+
+                // private static final Command glFoo_cmd = new Command(FunctionDescriptor.of(...));
+                buffer.append("    private static final Command ").append(commandName).append("_cmd = new Command(");
+                buffer.append(isVoid ? "FunctionDescriptor.ofVoid(" : "FunctionDescriptor.of(" + ret[1]);
+                for (int i=0; i<command.params.size(); i++) {
+                    if (i > 0 || !isVoid) {
+                        buffer.append(", ");
+                    }
+                    buffer.append(mapType(command.params.get(i).type)[1]);
+                }
+                buffer.append("));\n");
+                buffer.append("    private static final MethodHandle ").append(commandName).append("_mh = ")
+                    .append(commandName).append("_cmd.site.dynamicInvoker();\n");
+
+                // public static int glFoo(int a, MemorySegment b) { ... }
+                buffer.append("    public static ").append(isVoid ? "void" : ret[0]).append(' ').append(commandName).append('(');
+                for (int i=0; i<command.params.size(); i++) {
+                    Param param = command.params.get(i);
+                    if (i > 0) {
+                        buffer.append(", ");
+                    }
+                    buffer.append(mapType(param.type)[0]).append(' ').append(identifier(param.name));
+                }
+                buffer.append(") {\n");
+                buffer.append("        try {\n");
+                buffer.append("            ");
+                if (!isVoid) {
+                    buffer.append("return (").append(ret[0]).append(") ");
+                }
+                buffer.append(commandName).append("_mh.invokeExact(");
+                for (int i=0; i<command.params.size(); i++) {
+                    if (i > 0) {
+                        buffer.append(", ");
+                    }
+                    buffer.append(identifier(command.params.get(i).name));
+                }
+                buffer.append(");\n");
+                buffer.append("        } catch (Throwable t) {\n");
+                buffer.append("            throw rethrow(t);\n");
+                buffer.append("        }\n");
+                buffer.append("    }\n");
+            }
+            return fields;
+        }
+
+        static void generateFields(List<String> fields, StringBuilder buffer) {
+            buffer.append("new Command[] {");
+            for (int i=0; i<fields.size(); i++) {
+                if (i % 4 == 0) {
+                    buffer.append("\n        ");
+                } else {
+                    buffer.append(' ');
+                }
+                buffer.append(fields.get(i)).append(',');
+            }
+            buffer.append("\n    }");
+        }
+
+        static void generateNames(List<String> commandNames, StringBuilder buffer) {
+            buffer.append("new String[] {");
+            for (int i=0; i<commandNames.size(); i++) {
+                if (i % 4 == 0) {
+                    buffer.append("\n        ");
+                } else {
+                    buffer.append(' ');
+                }
+                buffer.append('"').append(commandNames.get(i)).append("\",");
+            }
+            buffer.append("\n    }");
+        }
+
+        public static void generateClass(Registry registry, ApiVersion version, List<ApiExtension> extensions,
+            String packageName, String className, StringBuilder buffer) throws Exception {
+
+            List<ApiVersion> versions = new ArrayList<>();
+            for (ApiVersion versionRef = version; versionRef != null; versionRef = versionRef.previous) {
+                versions.add(0, versionRef);
+            }
+
+            if (packageName != null && !packageName.isEmpty()) {
+                buffer.append("package ").append(packageName).append(";\n\n");
+            }
+
+            // runtime template ends inside the class body
+            String runtime = Files.readString(new File("src/bdgl_runtime.java.in").toPath());
+            buffer.append(runtime.replace("__CLASS__", className));
+
+            Set<String> emittedEnums = new HashSet<>();
+            Set<String> emittedCommands = new HashSet<>();
+
+            for (var apiVersion : versions) {
+                String name = apiVersion.feature.name;
+                List<String> commandNames = CGen.coldCommands(apiVersion.profile, List.of());
+
+                buffer.append("\n    //").append(name).append('\n');
+                generateEnums(registry, apiVersion.profile.enums, emittedEnums, buffer);
+
+                // declared after its commands, it links their call sites when loaded
+                List<String> fields = generateCommands(registry, name, commandNames, emittedCommands, buffer);
+
+                buffer.append("    public static final Version ").append(name).append(" = new Version(\"").append(name).append("\", ")
+                    .append(apiVersion.feature.numberMajor).append(", ").append(apiVersion.feature.numberMinor).append(", ");
+                generateNames(commandNames, buffer);
+                buffer.append(", ");
+                generateFields(fields, buffer);
+                buffer.append(");\n");
+            }
 
             for (var apiExt : extensions) {
+                List<String> commandNames = CGen.coldCommands(apiExt.requires, List.of());
 
-                buffer.append("\n//").append(apiExt.name).append('\n');
+                buffer.append("\n    //").append(apiExt.name).append('\n');
+                generateEnums(registry, apiExt.requires.enums, emittedEnums, buffer);
+
+                List<String> fields = generateCommands(registry, apiExt.name, commandNames, emittedCommands, buffer);
+
+                buffer.append("    public static final Extension ").append(apiExt.name).append(" = new Extension(\"").append(apiExt.name).append("\", ");
+                generateNames(commandNames, buffer);
+                buffer.append(", ");
+                generateFields(fields, buffer);
+                buffer.append(", ").append(apiExt.guaranteed).append(");\n");
+            }
+
+            // loadAll: every generated version, newest first (same as bdgl_load_all)
+            buffer.append("\n    public static final Version[] VERSIONS = {");
+            for (int i=versions.size()-1; i>=0; i--) {
+                buffer.append("\n        ").append(versions.get(i).feature.name).append(',');
+            }
+            buffer.append("\n    };\n");
+
+            buffer.append("\n    public static final Extension[] EXTENSIONS = {");
+            for (var apiExt : extensions) {
+                buffer.append("\n        ").append(apiExt.name).append(',');
+            }
+            buffer.append("\n    };\n");
+
+            buffer.append("}\n");
+        }
+    }
+
+    // bounded memory header generation, for registries too big to hold in memory
+    //
+    // pass 1 only keeps the target api's features and the (filtered) extensions that
+    // support it, which is enough to link the selected versions/extensions and emit
+    // every manifest up front
+    // pass 2 re-reads the registry and emits each selected command as it's read,
+    // so memory is bounded by the selected symbol set (not the registry or output size)
+    //
+    // the output is equivalent to CGen.generateHeader, but wrappers are in registry
+    // order (followed by the enums) rather than grouped by version/extension
+    static class StreamingGen {
+
+        // a command's wrapper: which table (version/extension name, or "hot") and index
+        static class Slot {
+            final String owner;
+            final int index;
+
+            Slot(String owner, int index) {
+                this.owner = owner;
+                this.index = index;
+            }
+        }
+
+        static void skipElement(XMLStreamReader reader) throws Exception {
+            int depth = 1;
+            while (depth > 0) {
+                reader.next();
+                if (reader.isStartElement()) {
+                    depth++;
+                } else if (reader.isEndElement()) {
+                    depth--;
+                }
+            }
+        }
+
+        static XMLStreamReader open(InputStream is) throws Exception {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+            while (reader.hasNext()) {
+                reader.next();
+                if (reader.isStartElement() && reader.getLocalName().equals("registry")) {
+                    return reader;
+                }
+            }
+            throw new IllegalStateException("no 'registry' tag found");
+        }
 
-                for (String enumName : apiExt.requires.enums) {
-                    String enumValue = registry.enums.get(enumName);
-                    buffer.append("#define ").append(enumName).append(" ").append(enumValue).append('\n');
+        // pass 1: features of 'apiName', and the extensions that support it
+        static Registry parseClosure(File file, String apiName, Set<String> extensionFilter) throws Exception {
+            var parser = new GLStaxParser();
+            var closure = new Registry();
+
+            try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+                XMLStreamReader reader = open(is);
+                try {
+                    while (reader.hasNext()) {
+                        reader.next();
+                        if (reader.isStartElement()) {
+                            switch (reader.getLocalName()) {
+                                case "enums", "commands" -> skipElement(reader);
+                                case "types" -> closure.funcTypes.putAll(parser.parseFuncTypes(reader));
+                                case "feature" -> {
+                                    if (apiName.equals(reader.getAttributeValue(null, "api"))) {
+                                        Feature feature = parser.parseFeature(reader);
+                                        closure.features.put(feature.name, feature);
+                                    } else {
+                                        skipElement(reader);
+                                    }
+                                }
+                                case "extension" -> {
+                                    String name = reader.getAttributeValue(null, "name");
+                                    String supported = reader.getAttributeValue(null, "supported");
+                                    if (supports(supported, apiName)
+                                        && (extensionFilter == null || extensionFilter.contains(name))) {
+                                        Extension extension = parser.parseExtension(reader);
+                                        closure.extensions.put(extension.name, extension);
+                                    } else {
+                                        skipElement(reader);
+                                    }
+                                }
+                                default -> {
+                                    // 'extensions' (descend into it), or other registry tags
+                                }
+                            }
+                        } else if (reader.isEndElement() && reader.getLocalName().equals("registry")) {
+                            return closure;
+                        }
+                    }
+                } finally {
+                    reader.close();
                 }
+            }
+            throw new IllegalStateException("Missing 'registry' end tag");
+        }
+
+        public static void generate(File file, String apiName, String number, String profile,
+            Set<String> extensionFilter, Set<String> guaranteed, Map<String, Long> callProfile, int hotLimit,
+            boolean threaded, StateCache stateCache, Writer out) throws Exception {
+
+            // pass 1: link the selected versions/extensions
+            Registry closure = parseClosure(file, apiName, extensionFilter);
+            Api api = link(closure).get(apiName);
+            if (api == null) {
+                throw new IllegalArgumentException("no features for api: " + apiName);
+            }
+            ApiVersion version = linkApi(api, number, profile);
+            if (version == null) {
+                throw new IllegalArgumentException("no version " + number + " for api: " + apiName);
+            }
+            List<ApiExtension> extensions = linkExtensions(api, profile, extensionFilter, guaranteed);
+
+            List<ApiVersion> versions = new ArrayList<>();
+            for (ApiVersion versionRef = version; versionRef != null; versionRef = versionRef.previous) {
+                versions.add(0, versionRef);
+            }
+            HotLayout hot = HotLayout.build(closure, versions, extensions, callProfile, hotLimit);
+
+            StringBuilder buffer = new StringBuilder();
+            if (threaded) {
+                buffer.append("#define BDGL_THREADED\n");
+            }
+            buffer.append( Files.readString(new File("src/bdgl_prefix.h").toPath()) );
+            CGen.generateTypes(closure, buffer);
+            hot.generateTable(buffer);
+
+            // manifests, and where each selected command's wrapper points
+            Set<String> selectedEnums = new HashSet<>();
+            Map<String, List<Slot>> slots = new HashMap<>();
+            for (var apiVersion : versions) {
+                List<String> hotNames = hot.owned(apiVersion.feature.name);
+                List<String> commandNames = CGen.coldCommands(apiVersion.profile, hotNames);
+
+                buffer.append("\n//").append(apiVersion.feature.name).append('\n');
+                CGen.generateVersionManifest(apiVersion, commandNames, hotNames, hot, buffer);
+                addSlots(slots, apiVersion.feature.name, commandNames, hotNames, hot);
+                selectedEnums.addAll(apiVersion.profile.enums);
+
+                out.append(buffer);
+                buffer.setLength(0);
+            }
+            for (var apiExt : extensions) {
+                List<String> hotNames = hot.owned(apiExt.name);
+                List<String> commandNames = CGen.coldCommands(apiExt.requires, hotNames);
 
-                // need a deterministic/indexable command list
-                List<String> commandNames = new ArrayList<>();
-                apiExt.requires.commands.forEach(cmdName -> commandNames.add(cmdName));
-                commandNames.sort(String.CASE_INSENSITIVE_ORDER);
+                buffer.append("\n//").append(apiExt.name).append('\n');
+                CGen.generateExtensionManifest(apiExt, commandNames, hotNames, hot, buffer);
+                addSlots(slots, apiExt.name, commandNames, hotNames, hot);
+                selectedEnums.addAll(apiExt.requires.enums);
 
-                buffer.append("\n#ifdef BDGL_IMPL\n");
+                out.append(buffer);
+                buffer.setLength(0);
+            }
 
-                // declare per-extension function pointer table
-                int commandCount = apiExt.requires.commands.size();
-                if (commandCount > 0) {
-                    // only write the FP table if we have commands
-                    // (if not, we'll use a null pointer below)
-                    buffer.append("void* (*bdgl_fp_").append(apiExt.name).append("[").append(commandCount).append("])();\n");
+            StateCache state = stateCache.select(new HashSet<>(slots.keySet()));
+
+            // pass 2: emit wrappers as they're read
+            // (keeping the selected enums' values/groups for the enum defines and group
+            // tables, and the cached/invalidating commands for the shadow state wrappers)
+            // an enum defined more than once keeps its last value and all of its groups,
+            // like Registry.enums, so the enum defines are emitted after the pass
+            // (in order of first definition)
+            Map<String, String> groupedEnums = new LinkedHashMap<>();
+            Map<String, Set<String>> enumGroups = new HashMap<>();
+            String enumsGroup = null;
+            // (and the --threaded marshalling functions, emitted after the suffix)
+            StringBuilder queued = new StringBuilder();
+            Map<String, Command> stateCommands = new HashMap<>();
+            boolean coreOffsets = CGen.coreOffsets(version);
+            buffer.append("\n// commands\n");
+            var parser = new GLStaxParser();
+            try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+                XMLStreamReader reader = open(is);
+                try {
+                    while (reader.hasNext()) {
+                        reader.next();
+                        if (reader.isStartElement()) {
+                            switch (reader.getLocalName()) {
+                                case "enum" -> {
+                                    // only <enums> children reach here, features/extensions are skipped
+                                    String enumName = reader.getAttributeValue(null, "name");
+                                    if (selectedEnums.contains(enumName)) {
+                                        String enumValue = reader.getAttributeValue(null, "value");
+                                        String group = reader.getAttributeValue(null, "group");
+                                        groupedEnums.put(enumName, enumValue);
+                                        addEnumGroups(enumGroups, enumName, group != null ? group : enumsGroup);
+                                    }
+                                }
+                                case "enums" -> enumsGroup = reader.getAttributeValue(null, "group");
+                                case "command" -> {
+                                    Command command = parser.parseCommand(reader);
+                                    if (state.wraps(command.proto.name)) {
+                                        stateCommands.put(command.proto.name, command);
+                                    }
+                                    // one wrapper, through the first owner's slot (see CGen.wrapperOwners)
+                                    List<Slot> commandSlots = slots.getOrDefault(command.proto.name, List.of());
+                                    if (!commandSlots.isEmpty()) {
+                                        Slot slot = commandSlots.get(0);
+                                        CGen.generateCommand(state.wrap(command), slot.owner, slot.index, buffer);
+                                        if (threaded) {
+                                            CGen.generateQueuedCommand(state.wrap(command), slot.owner, slot.index, coreOffsets, queued);
+                                        }
+                                    }
+                                    slots.remove(command.proto.name);
+                                }
+                                case "feature", "extensions" -> skipElement(reader);
+                                default -> {
+                                    // descend into 'commands'
+                                }
+                            }
+                            out.append(buffer);
+                            buffer.setLength(0);
+                        }
+                    }
+                } finally {
+                    reader.close();
                 }
+            }
+
+            if (!slots.isEmpty()) {
+                throw new IllegalStateException("reference to non-existent commands: " + slots.keySet());
+            }
+
+            buffer.append("\n// enums\n");
+            groupedEnums.forEach((enumName, enumValue) ->
+                buffer.append("#define ").append(enumName).append(' ').append(enumValue).append('\n'));
+
+            CGen.generateExtensionList(versions, extensions, buffer);
+            CGen.generateEnumGroups(groupedEnums, enumGroups, groupedEnums.keySet(), buffer);
+            StringBuilder stateImpl = new StringBuilder();
+            state.generate(stateCommands, groupedEnums, enumGroups, groupedEnums.keySet(), buffer, stateImpl);
+            buffer.append( Files.readString(new File("src/bdgl_suffix.h").toPath()) );
+            CGen.generateLoadAll(version, extensions, buffer);
+            if (threaded) {
+                buffer.append("\n#ifdef BDGL_IMPL\n").append(queued).append("#endif\n");
+            }
+            buffer.append(stateImpl);
+            out.append(buffer);
+        }
+
+        static void addSlots(Map<String, List<Slot>> slots, String owner, List<String> commandNames,
+            List<String> hotNames, HotLayout hot) {
+
+            for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
+                slots.computeIfAbsent(commandNames.get(commandIndex), k -> new ArrayList<>())
+                    .add(new Slot(owner, commandIndex));
+            }
+            for (String commandName : hotNames) {
+                slots.computeIfAbsent(commandName, k -> new ArrayList<>())
+                    .add(new Slot("hot", hot.index(commandName)));
+            }
+        }
+    }
+
+    // reverse index of registry symbols (commands, enums, types) to the
+    // features/extensions that introduce or remove them, command aliases,
+    // and param/return types
+    //
+    // on-disk format (big endian):
+    //   magic    "BDGLIDX1"
+    //   count    int
+    //   offsets  int[count]  (absolute offset of each record, in symbol order)
+    //   records  [keyLen:u16 | key | factsLen:int | facts]
+    //
+    // facts are '\n' separated lines of "kind name [detail...]":
+    //   feature GL_VERSION_4_4 gl -       (introduced by feature, api, profile or '-')
+    //   extension GL_ARB_sync gl|glcore - (introduced by extension, supported apis, profile)
+    //   removed GL_VERSION_3_2 gl core    (removed by feature, api, profile)
+    //   alias glActiveTexture / aliased-by glActiveTextureARB
+    //   param GLsync sync / returns GLsync  (command signature types)
+    //   taken-by glWaitSync / returned-by glFenceSync  (type usage)
+    //   value 0x1F02                      (enum value)
+    static class SymbolIndex {
+
+        static final byte[] MAGIC = "BDGLIDX1".getBytes(StandardCharsets.US_ASCII);
+
+        Map<String, List<String>> facts = new TreeMap<>();
+
+        void add(String symbol, String fact) {
+            List<String> symbolFacts = facts.computeIfAbsent(symbol, k -> new ArrayList<>());
+            if (!symbolFacts.contains(fact)) {
+                symbolFacts.add(fact);
+            }
+        }
 
-                buffer.append("bdgl_Extension bdgl_").append(apiExt.name).append(" = {\n");
-                buffer.append("  .loaded = 0,\n");
-                buffer.append("  .names = ");
-                if (commandCount > 0) {
-                    for (String commandName : commandNames) {
-                        // e.g. "glGetString\0"
-                        buffer.append('\n').append('"').append(commandName).append("\\0\"");
+        void addSlice(ApiSlice slice, String fact) {
+            String profile = slice.profile == null ? "-" : slice.profile;
+            for (String typeName : slice.types) {
+                add(typeName, fact + ' ' + profile);
+            }
+            for (String enumName : slice.enums) {
+                add(enumName, fact + ' ' + profile);
+            }
+            for (String commandName : slice.commands) {
+                add(commandName, fact + ' ' + profile);
+            }
+        }
+
+        static SymbolIndex build(Registry registry, Map<String, Api> apis) {
+            var index = new SymbolIndex();
+
+            // features, in api/version order (link() sorts each api's features)
+            List<String> apiNames = new ArrayList<>(apis.keySet());
+            apiNames.sort(null);
+            for (String apiName : apiNames) {
+                for (Feature feature : apis.get(apiName).features) {
+                    for (var require : feature.requires) {
+                        index.addSlice(require, "feature " + feature.name + ' ' + feature.api);
                     }
-                    buffer.append(",\n  .funcs = (void**)bdgl_fp_").append(apiExt.name).append(",\n");
+                    for (var remove : feature.removes) {
+                        index.addSlice(remove, "removed " + feature.name + ' ' + feature.api);
+                    }
+                }
+            }
+
+            List<String> extNames = new ArrayList<>(registry.extensions.keySet());
+            extNames.sort(null);
+            for (String extName : extNames) {
+                Extension extension = registry.extensions.get(extName);
+                for (var require : extension.requires) {
+                    index.addSlice(require, "extension " + extension.name + ' ' + extension.supported);
+                }
+            }
+
+            List<String> commandNames = new ArrayList<>(registry.commands.keySet());
+            commandNames.sort(null);
+            for (String commandName : commandNames) {
+                Command command = registry.commands.get(commandName);
+
+                if (command.alias != null) {
+                    index.add(commandName, "alias " + command.alias);
+                    index.add(command.alias, "aliased-by " + commandName);
+                }
+
+                if (!command.proto.ret.name.equals("void") || command.proto.ret.pointer) {
+                    StringBuilder ret = new StringBuilder("returns ");
+                    CGen.generateType(command.proto.ret, ret);
+                    index.add(commandName, ret.toString());
+                    index.add(command.proto.ret.name, "returned-by " + commandName);
+                }
+                for (Param param : command.params) {
+                    StringBuilder type = new StringBuilder("param ");
+                    CGen.generateType(param.type, type);
+                    index.add(commandName, type.append(' ').append(param.name).toString());
+                    index.add(param.type.name, "taken-by " + commandName);
+                }
+            }
+
+            registry.enums.forEach((enumName, enumValue) -> {
+                if (enumValue != null) {
+                    index.add(enumName, "value " + enumValue);
+                }
+            });
+
+            return index;
+        }
+
+        void write(File file) throws Exception {
+            List<byte[]> keys = new ArrayList<>();
+            List<byte[]> values = new ArrayList<>();
+            int size = MAGIC.length + 4;
+            for (var entry : facts.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = String.join("\n", entry.getValue()).getBytes(StandardCharsets.UTF_8);
+                keys.add(key);
+                values.add(value);
+                size += 4 + 2 + key.length + 4 + value.length;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.put(MAGIC);
+            buffer.putInt(keys.size());
+
+            int offset = MAGIC.length + 4 + 4*keys.size();
+            for (int i=0; i<keys.size(); i++) {
+                buffer.putInt(offset);
+                offset += 2 + keys.get(i).length + 4 + values.get(i).length;
+            }
+            for (int i=0; i<keys.size(); i++) {
+                buffer.putShort((short)keys.get(i).length).put(keys.get(i));
+                buffer.putInt(values.get(i).length).put(values.get(i));
+            }
+
+            Files.write(file.toPath(), buffer.array());
+        }
+    }
+
+    // read side of SymbolIndex, memory maps the index and binary searches it
+    // (never touches gl.xml)
+    static class SymbolIndexReader {
+        final ByteBuffer buffer;
+        final int count;
+
+        SymbolIndexReader(File file) throws Exception {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            for (int i=0; i<SymbolIndex.MAGIC.length; i++) {
+                if (buffer.get(i) != SymbolIndex.MAGIC[i]) {
+                    throw new IllegalStateException("not a symbol index: " + file);
+                }
+            }
+            count = buffer.getInt(SymbolIndex.MAGIC.length);
+        }
+
+        // compare the key of the record at 'offset' to 'key' (unsigned bytes, same as TreeMap order for ascii)
+        int compareKey(int offset, byte[] key) {
+            int keyLen = buffer.getShort(offset) & 0xffff;
+            int n = Math.min(keyLen, key.length);
+            for (int i=0; i<n; i++) {
+                int cmp = (buffer.get(offset + 2 + i) & 0xff) - (key[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return keyLen - key.length;
+        }
+
+        // facts for the given symbol, or an empty list if the symbol isn't indexed
+        List<String> lookup(String symbol) {
+            byte[] key = symbol.getBytes(StandardCharsets.UTF_8);
+            int offsetsBase = SymbolIndex.MAGIC.length + 4;
+
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int offset = buffer.getInt(offsetsBase + 4*mid);
+                int cmp = compareKey(offset, key);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
                 } else {
-                    // if we don't have any commands, we need an empty 'names' string
-                    // and a null pointer to the function pointers array
-                    buffer.append("\"\"");
-                    buffer.append(",\n  .funcs = 0,\n");
+                    int valueOffset = offset + 2 + key.length;
+                    byte[] value = new byte[buffer.getInt(valueOffset)];
+                    buffer.get(valueOffset + 4, value);
+                    return List.of(new String(value, StandardCharsets.UTF_8).split("\n"));
                 }
-                buffer.append("};\n");
+            }
+            return List.of();
+        }
+    }
 
-                buffer.append("#else\n");
-                buffer.append("extern bdgl_Extension bdgl_").append(apiExt.name).append(";\n");
-                buffer.append("#endif\n");
+    // query <index> <symbol>...       all facts for each symbol
+    // query <index> --taking <type>   features/extensions introducing commands that take <type>
+    static void query(String[] args) throws Exception {
+        var reader = new SymbolIndexReader(new File(args[1]));
 
-                for (int commandIndex=0; commandIndex<commandNames.size(); commandIndex++) {
-                    String commandName = commandNames.get(commandIndex);
+        if (args.length == 4 && args[2].equals("--taking")) {
+            for (String fact : reader.lookup(args[3])) {
+                if (!fact.startsWith("taken-by ")) {
+                    continue;
+                }
+                String commandName = fact.substring("taken-by ".length());
+                for (String commandFact : reader.lookup(commandName)) {
+                    if (commandFact.startsWith("feature ") || commandFact.startsWith("extension ")) {
+                        System.out.println(commandName + ": " + commandFact);
+                    }
+                }
+            }
+            return;
+        }
+
+        for (int i=2; i<args.length; i++) {
+            System.out.println(args[i] + ":");
+            for (String fact : reader.lookup(args[i])) {
+                System.out.println("  " + fact);
+            }
+        }
+    }
+
+    // writes synthetic registries shaped like gl.xml at a multiple of its size
+    // (features with require/remove chains and profiles, extensions supported by
+    // multiple apis, long param lists) to see how the parse/link/generate phases scale
+    static class RegistrySynth {
+
+        // roughly gl.xml's counts
+        static final int COMMANDS = 3300;
+        static final int ENUMS = 9000;
+        static final int FEATURES = 25;
+        static final int EXTENSIONS = 860;
+
+        // feature numbers are single digit major.minor, so versions beyond that spill into more apis
+        static final int VERSIONS_PER_API = 45;
+
+        static final String[] PARAM_TYPES = {
+            "GLenum", "GLuint", "GLint", "GLsizei", "GLfloat", "GLdouble", "GLboolean",
+            "GLbitfield", "GLintptr", "GLsizeiptr", "GLuint64", "GLsync",
+        };
+
+        static String apiName(int apiIndex) {
+            return apiIndex == 0 ? "gl" : "synth" + apiIndex;
+        }
+
+        static void write(File file, int scale, long seed) throws Exception {
+
+            var random = new Random(seed);
+
+            int commandCount = COMMANDS * scale;
+            int enumCount = ENUMS * scale;
+            int featureCount = FEATURES * scale;
+            int extensionCount = EXTENSIONS * scale;
+            int apiCount = (featureCount + VERSIONS_PER_API - 1) / VERSIONS_PER_API;
+
+            XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+            try (var os = new BufferedOutputStream(new FileOutputStream(file))) {
+                XMLStreamWriter writer = outputFactory.createXMLStreamWriter(os, "UTF-8");
+
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeCharacters("\n");
+                writer.writeStartElement("registry");
+                writer.writeCharacters("\n");
+
+                writer.writeStartElement("types");
+                writer.writeEndElement();
+                writer.writeCharacters("\n");
+
+                // enums, in blocks like gl.xml
+                for (int block=0; block<enumCount; block+=64) {
+                    writer.writeStartElement("enums");
+                    writer.writeAttribute("namespace", "GL");
+                    writer.writeAttribute("group", "SynthGroup" + (block / 64) % 200);
+                    writer.writeCharacters("\n");
+                    for (int i=block; i<Math.min(enumCount, block+64); i++) {
+                        writer.writeEmptyElement("enum");
+                        writer.writeAttribute("value", "0x" + Integer.toHexString(i));
+                        writer.writeAttribute("name", "GL_SYNTH_ENUM_" + i);
+                        writer.writeAttribute("group", "SynthGroup" + random.nextInt(200));
+                        writer.writeCharacters("\n");
+                    }
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
+                }
+
+                writer.writeStartElement("commands");
+                writer.writeAttribute("namespace", "GL");
+                writer.writeCharacters("\n");
+                for (int i=0; i<commandCount; i++) {
+                    writer.writeStartElement("command");
+
+                    writer.writeStartElement("proto");
+                    if (i % 5 == 0) {
+                        writer.writeStartElement("ptype");
+                        writer.writeCharacters(PARAM_TYPES[random.nextInt(PARAM_TYPES.length)]);
+                        writer.writeEndElement();
+                        writer.writeCharacters(" ");
+                    } else {
+                        writer.writeCharacters("void ");
+                    }
+                    writer.writeStartElement("name");
+                    writer.writeCharacters("glSynth" + i);
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+
+                    // mostly short param lists, with a long tail
+                    int paramCount = random.nextInt(10) == 0 ? 10 + random.nextInt(20) : random.nextInt(6);
+                    for (int p=0; p<paramCount; p++) {
+                        writer.writeStartElement("param");
+                        boolean pointer = random.nextInt(4) == 0;
+                        if (pointer && p > 0) {
+                            writer.writeAttribute("len", "p" + (p-1));
+                        }
+                        if (random.nextBoolean()) {
+                            writer.writeAttribute("group", "SynthGroup" + random.nextInt(200));
+                        }
+                        if (pointer) {
+                            writer.writeCharacters("const ");
+                        }
+                        writer.writeStartElement("ptype");
+                        writer.writeCharacters(PARAM_TYPES[random.nextInt(PARAM_TYPES.length)]);
+                        writer.writeEndElement();
+                        writer.writeCharacters(pointer ? " *" : " ");
+                        writer.writeStartElement("name");
+                        writer.writeCharacters("p" + p);
+                        writer.writeEndElement();
+                        writer.writeEndElement();
+                    }
+                    if (i % 7 == 0 && i > 0) {
+                        writer.writeEmptyElement("alias");
+                        writer.writeAttribute("name", "glSynth" + (i - 1));
+                    }
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
+                }
+                writer.writeEndElement();
+                writer.writeCharacters("\n");
+
+                // features: each introduces a contiguous run of new commands/enums,
+                // later versions of each api remove some earlier symbols from 'core'
+                int commandsPerFeature = Math.max(1, (commandCount * 2 / 5) / featureCount);
+                int enumsPerFeature = Math.max(1, (enumCount / 2) / featureCount);
+                for (int f=0; f<featureCount; f++) {
+                    int apiIndex = f / VERSIONS_PER_API;
+                    int versionIndex = f % VERSIONS_PER_API;
+                    int major = 1 + versionIndex / 5;
+                    int minor = versionIndex % 5;
+
+                    String featureName = "GL_SYNTH" + apiIndex + "_VERSION_" + major + "_" + minor;
+                    writer.writeStartElement("feature");
+                    writer.writeAttribute("api", apiName(apiIndex));
+                    writer.writeAttribute("name", featureName);
+                    writer.writeAttribute("number", major + "." + minor);
+                    writer.writeCharacters("\n");
+
+                    writer.writeStartElement("require");
+                    writeRun(writer, "command", "glSynth", f * commandsPerFeature, commandsPerFeature, commandCount);
+                    writeRun(writer, "enum", "GL_SYNTH_ENUM_", f * enumsPerFeature, enumsPerFeature, enumCount);
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
+
+                    if (versionIndex > 0 && random.nextInt(3) == 0) {
+                        writer.writeStartElement("require");
+                        writer.writeAttribute("profile", "compatibility");
+                        writeRun(writer, "enum", "GL_SYNTH_ENUM_", (f * enumsPerFeature + random.nextInt(enumsPerFeature)) % enumCount, 4, enumCount);
+                        writer.writeEndElement();
+                        writer.writeCharacters("\n");
+                    }
+
+                    if (versionIndex >= 10) {
+                        // remove some symbols introduced by earlier versions of this api
+                        int earlier = apiIndex * VERSIONS_PER_API + random.nextInt(versionIndex);
+                        writer.writeStartElement("remove");
+                        writer.writeAttribute("profile", "core");
+                        writeRun(writer, "command", "glSynth", earlier * commandsPerFeature, Math.max(1, commandsPerFeature / 10), commandCount);
+                        writeRun(writer, "enum", "GL_SYNTH_ENUM_", earlier * enumsPerFeature, Math.max(1, enumsPerFeature / 10), enumCount);
+                        writer.writeEndElement();
+                        writer.writeCharacters("\n");
+                    }
 
-                    Command command = registry.commands.get(commandName);
-                    if (command == null) {
-                        throw new IllegalStateException("Extension '"+apiExt.name+"' reference non-existent command: " + commandName);
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
+                }
+
+                writer.writeStartElement("extensions");
+                writer.writeCharacters("\n");
+                for (int e=0; e<extensionCount; e++) {
+                    // supported by 1-3 apis
+                    StringBuilder supported = new StringBuilder(apiName(random.nextInt(apiCount)));
+                    if (random.nextBoolean()) {
+                        supported.append("|glcore");
+                    }
+                    if (random.nextInt(3) == 0) {
+                        supported.append('|').append(apiName(random.nextInt(apiCount)));
+                    }
+
+                    writer.writeStartElement("extension");
+                    writer.writeAttribute("name", "GL_SYNTH_extension_" + e);
+                    writer.writeAttribute("supported", supported.toString());
+                    writer.writeCharacters("\n");
+
+                    writer.writeStartElement("require");
+                    writeRun(writer, "command", "glSynth", random.nextInt(commandCount), random.nextInt(8), commandCount);
+                    writeRun(writer, "enum", "GL_SYNTH_ENUM_", random.nextInt(enumCount), random.nextInt(12), enumCount);
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
+
+                    if (random.nextInt(4) == 0) {
+                        writer.writeStartElement("require");
+                        writer.writeAttribute("profile", "core");
+                        writeRun(writer, "command", "glSynth", random.nextInt(commandCount), 2, commandCount);
+                        writer.writeEndElement();
+                        writer.writeCharacters("\n");
                     }
 
-                    generateCommand(command, apiExt.name, commandIndex, buffer);
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n");
                 }
+                writer.writeEndElement();
+                writer.writeCharacters("\n");
+
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close();
             }
+        }
 
-            buffer.append( Files.readString(new File("src/bdgl_suffix.h").toPath()) );
+        // <command name="glSynth12"/> ... (wraps around the symbol count)
+        static void writeRun(XMLStreamWriter writer, String tag, String prefix, int start, int count, int total) throws Exception {
+            for (int i=0; i<count; i++) {
+                writer.writeEmptyElement(tag);
+                writer.writeAttribute("name", prefix + ((start + i) % total));
+            }
+        }
+    }
 
-            buffer.append("#ifdef BDGL_IMPL\n");
-            buffer.append("int bdgl_load_all(bdgl_loadproc loadproc) {\n");
-            buffer.append("  return 0 \n");
+    // time and peak heap of each phase, for gl.xml and synthetic registries
+    // at each of the given scales
+    //
+    // between consecutive synthetic scales, each phase's time ratio is compared to
+    // the registry size ratio: a phase that grows clearly faster than its input
+    // (e.g. something quadratic in the symbol count) is flagged, and fails the bench
+    static class ScalingBench {
+
+        // time ratio above size ratio * this is superlinear (leaves room for gc/jit noise)
+        static final double SUPERLINEAR = 2.0;
+        // phases faster than this at the smaller scale are too noisy to compare
+        static final long MIN_NANOS = 10_000_000;
+
+        static long peakHeap() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            return peak;
+        }
 
-            ApiVersion versionRef = version;
-            while (versionRef != null) {
+        static void resetPeakHeap() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
 
-                buffer.append("    + bdgl_load_version(&bdgl_").append(versionRef.feature.name)
-                    .append(",loadproc)\n");
+        interface Phase<T> {
+            T run() throws Exception;
+        }
 
-                versionRef = versionRef.previous;
+        // times: phase name -> elapsed nanos, in phase order
+        static <T> T phase(String input, String name, Map<String, Long> times, Phase<T> phase) throws Exception {
+            resetPeakHeap();
+            long start = System.nanoTime();
+            T result = phase.run();
+            long elapsed = System.nanoTime() - start;
+            times.put(name, elapsed);
+            System.out.printf("%-24s %-16s %10.1f ms %10.1f MB%n",
+                input, name, elapsed / 1e6, peakHeap() / (1024.0 * 1024.0));
+            return result;
+        }
+
+        // elapsed nanos of each phase
+        static Map<String, Long> run(File file, String input) throws Exception {
+            Map<String, Long> times = new LinkedHashMap<>();
+
+            Registry registry = phase(input, "parse", times, () -> new GLStaxParser().parse(file));
+            Map<String, Api> apis = phase(input, "link", times, () -> GLStaxParser.link(registry));
+            Api gl = apis.get("gl");
+
+            // link every api (the synthetic registries spread features over many apis),
+            // but only generate the 'gl' header
+            phase(input, "linkApi", times, () -> {
+                apis.forEach((apiName, api) -> linkApi(api, "core"));
+                return apis.size();
+            });
+            phase(input, "linkExtensions", times, () -> {
+                apis.forEach((apiName, api) -> linkExtensions(api, "core", null));
+                return apis.size();
+            });
+
+            List<ApiVersion> versions = linkApi(gl, "core");
+            List<ApiExtension> extensions = linkExtensions(gl, "core", null);
+            phase(input, "generateHeader", times, () -> {
+                StringBuilder buffer = new StringBuilder();
+                CGen.generateHeader(registry, versions.get(versions.size()-1), extensions, buffer);
+                return buffer.length();
+            });
+            return times;
+        }
+
+        // a synthetic registry's run
+        static class SynthRun {
+            String input;
+            long size; // registry file bytes
+            Map<String, Long> times;
+        }
+
+        // flags the phases of 'to' that grew superlinearly from 'from', returns how many
+        static int compare(SynthRun from, SynthRun to) {
+
+            double sizeRatio = (double)to.size / from.size;
+            System.out.printf("%s -> %s: size x%.1f%n", from.input, to.input, sizeRatio);
+
+            int flagged = 0;
+            for (var entry : to.times.entrySet()) {
+                Long fromTime = from.times.get(entry.getKey());
+                if (fromTime == null) {
+                    continue;
+                }
+                double timeRatio = (double)entry.getValue() / fromTime;
+                String verdict;
+                if (fromTime < MIN_NANOS) {
+                    verdict = "(too fast to compare)";
+                } else if (timeRatio > sizeRatio * SUPERLINEAR) {
+                    verdict = "SUPERLINEAR";
+                    flagged++;
+                } else {
+                    verdict = "ok";
+                }
+                System.out.printf("  %-16s time x%-8.1f %s%n", entry.getKey(), timeRatio, verdict);
             }
+            return flagged;
+        }
 
-            buffer.append(";\n}\n");
-            buffer.append("#endif\n");
+        // returns the number of flagged phases
+        static int run(String[] scales) throws Exception {
+            System.out.printf("%-24s %-16s %13s %13s%n", "input", "phase", "time", "peak heap");
+            run(new File("gl.xml"), "gl.xml");
+
+            // synthetic runs that completed
+            List<SynthRun> runs = new ArrayList<>();
+            for (String scale : scales) {
+                String input = "synth " + scale + "x";
+                File file = File.createTempFile("bdgl-synth-" + scale + "x-", ".xml");
+                file.deleteOnExit();
+                RegistrySynth.write(file, Integer.parseInt(scale), 1);
+                try {
+                    SynthRun synthRun = new SynthRun();
+                    synthRun.input = input;
+                    synthRun.size = file.length();
+                    synthRun.times = run(file, input);
+                    runs.add(synthRun);
+                } catch (OutOfMemoryError e) {
+                    System.out.println(input + " out of memory (" + e.getMessage() + ")");
+                } finally {
+                    file.delete();
+                }
+            }
+
+            // gl.xml isn't shaped like the synthetic registries, only compare those
+            System.out.println();
+            int flagged = 0;
+            for (int i=1; i<runs.size(); i++) {
+                flagged += compare(runs.get(i-1), runs.get(i));
+            }
+            if (flagged > 0) {
+                System.out.println(flagged + " phase(s) grew more than " + SUPERLINEAR + "x faster than their input");
+            }
+            return flagged;
         }
     }
 
@@ -986,8 +3404,128 @@ public class GLStaxParser {
 
     public static void main(String[] args) throws Exception {
 
+        if (args.length > 0) {
+            switch (args[0]) {
+                case "index" -> {
+                    // index [gl.xml] [out]
+                    String registryFile = args.length > 1 ? args[1] : "gl.xml";
+                    String indexFile = args.length > 2 ? args[2] : "generated/gl.idx";
+
+                    Registry registry = new GLStaxParser().parse(new File(registryFile));
+                    SymbolIndex index = SymbolIndex.build(registry, GLStaxParser.link(registry));
+                    index.write(new File(indexFile));
+                    System.out.println("indexed " + index.facts.size() + " symbols: " + indexFile);
+                    return;
+                }
+                case "query" -> {
+                    query(args);
+                    return;
+                }
+                case "synth" -> {
+                    // synth <scale> <out.xml> [seed]
+                    long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+                    RegistrySynth.write(new File(args[2]), Integer.parseInt(args[1]), seed);
+                    return;
+                }
+                case "bench" -> {
+                    // bench [scale...]
+                    String[] scales = args.length > 1
+                        ? Arrays.copyOfRange(args, 1, args.length)
+                        : new String[] { "2", "10", "50" };
+                    if (ScalingBench.run(scales) > 0) {
+                        System.exit(1);
+                    }
+                    return;
+                }
+                case "gen" -> {
+                    generate(Arrays.copyOfRange(args, 1, args.length));
+                    return;
+                }
+                default -> {
+                    throw new IllegalArgumentException("unknown command: " + args[0]);
+                }
+            }
+        }
+
+        generate(args);
+    }
+
+    // gen [--registry gl.xml] [--version 3.3] [--out generated/gl33core.h]
+    //     [--profile calls.txt] [--hot N] [--stream] [--fleet device.txt ...] [--threaded]
+    //     [--state-cache src/state_cache.txt]
+    //   --profile  command call counts ('name count' per line), the most called
+    //              commands are laid out in a single cache line aligned table
+    //   --hot      max number of hot commands (default: 128, 16 cache lines)
+    //   --stream   bounded memory two-pass generation (see StreamingGen)
+    //   --fleet    captured extension list of a target device (see Fleet), repeatable:
+    //              only extensions on some device are generated, ones on every device
+    //              are loaded by bdgl_load_all, and --version defaults to the fleet minimum
+    //   --threaded queue void calls to a GL worker thread (see BDGL_THREADED in bdgl_suffix.h)
+    //   --state-cache  commands to drop redundant calls of (see StateCache), C header only
+    //   --java     emit java.lang.foreign bindings (see JavaGen) into this source directory
+    //              instead of the C header, with --package (default: bdgl) and --class
+    static void generate(String[] options) throws Exception {
+
+        String registryFile = "gl.xml";
+        String versionNumber = null;
+        String outFile = "generated/gl33core.h";
+        Map<String, Long> profile = null;
+        int hotLimit = 128;
+        boolean stream = false;
+        boolean threaded = false;
+        StateCache stateCache = StateCache.NONE;
+        String javaDir = null;
+        String javaPackage = "bdgl";
+        String javaClass = null;
+        List<File> fleetFiles = new ArrayList<>();
+        for (int i=0; i<options.length; i++) {
+            switch (options[i]) {
+                case "--fleet" -> fleetFiles.add(new File(options[++i]));
+                case "--java" -> javaDir = options[++i];
+                case "--package" -> javaPackage = options[++i];
+                case "--class" -> javaClass = options[++i];
+                case "--registry" -> registryFile = options[++i];
+                case "--version" -> versionNumber = options[++i];
+                case "--out" -> outFile = options[++i];
+                case "--profile" -> profile = HotLayout.readProfile(new File(options[++i]));
+                case "--hot" -> hotLimit = Integer.parseInt(options[++i]);
+                case "--stream" -> stream = true;
+                case "--threaded" -> threaded = true;
+                case "--state-cache" -> stateCache = StateCache.read(new File(options[++i]));
+                default -> throw new IllegalArgumentException("unknown option: " + options[i]);
+            }
+        }
+
+        // extensions
+        Set<String> extensionFilter = new HashSet<>();
+        // extensionFilter.add("GL_ARB_draw_instanced");
+        // extensionFilter.add("GL_ARB_draw_indirect");
+
+        Set<String> guaranteed = null;
+        if (!fleetFiles.isEmpty()) {
+            Fleet fleet = Fleet.read(fleetFiles);
+            if (versionNumber == null) {
+                versionNumber = fleet.minVersion;
+            } else if (fleet.minVersion != null && Fleet.compareVersions(versionNumber, fleet.minVersion) > 0) {
+                throw new IllegalArgumentException("version " + versionNumber + " is newer than the fleet minimum " + fleet.minVersion);
+            }
+            extensionFilter.addAll(fleet.present());
+            guaranteed = fleet.guaranteed();
+        }
+        if (versionNumber == null) {
+            versionNumber = "3.3";
+        }
+
+        if (stream) {
+            try (Writer out = new BufferedWriter(new FileWriter(outFile))) {
+                StreamingGen.generate(new File(registryFile), "gl", versionNumber, "core",
+                    extensionFilter, guaranteed, profile, hotLimit, threaded, stateCache, out);
+            }
+            return;
+        }
+
         var parser = new GLStaxParser();
-        Registry registry = parser.parse(new File("gl.xml"));
+        Registry registry = parser.parse(new File(registryFile));
 
         Map<String, Api> apis = GLStaxParser.link(registry);
 
@@ -999,19 +3537,14 @@ public class GLStaxParser {
 
         Api gl = apis.get("gl");
 
-        ApiVersion gl33 = linkApi(gl, "3.3", "core");
-
-        // extensions
-        Set<String> extensionFilter = new HashSet<>();
-        // extensionFilter.add("GL_ARB_draw_instanced");
-        // extensionFilter.add("GL_ARB_draw_indirect");
+        ApiVersion gl33 = linkApi(gl, versionNumber, "core");
 
         // note: some extensions are just enums (no commands), and the presence of the
         //       extension just indicates that another command accepts different enum args
         // so:
         // * there will be a bdgl_Extension
         // * but its name list will be empty
-        List<ApiExtension> extensions = linkExtensions(gl, "core", extensionFilter);
+        List<ApiExtension> extensions = linkExtensions(gl, "core", extensionFilter, guaranteed);
 
         System.out.println("compatible extensions: ");
         for (var apiExt : extensions) {
@@ -1021,8 +3554,22 @@ public class GLStaxParser {
         }
 
         StringBuilder buffer = new StringBuilder();
-        CGen.generateHeader(registry, gl33, extensions, buffer);
-        Files.writeString(new File("generated/gl33core.h").toPath(), buffer, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        if (javaDir != null) {
+            if (javaClass == null) {
+                javaClass = "GL" + versionNumber.replace(".", "") + "Core";
+            }
+            JavaGen.generateClass(registry, gl33, extensions, javaPackage, javaClass, buffer);
+
+            File packageDir = new File(javaDir, javaPackage.replace('.', File.separatorChar));
+            packageDir.mkdirs();
+            Files.writeString(new File(packageDir, javaClass + ".java").toPath(), buffer,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            return;
+        }
+
+        CGen.generateHeader(registry, gl33, extensions, profile, hotLimit, threaded, stateCache, buffer);
+        Files.writeString(new File(outFile).toPath(), buffer, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
 
         // List<ApiVersion> allVersionsCoreProfile = linkApi(gl, "core");
         // for (ApiVersion apiVersion : allVersionsCoreProfile) {
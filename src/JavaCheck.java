@@ -0,0 +1,77 @@
+import bdgl.GL33Core;
+import bdgl.GL33Fleet;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.nio.file.Path;
+
+// check-java: the generated java.lang.foreign bindings must load against a stub
+// library (src/java_stub.c) and call through to it
+public class JavaCheck {
+
+    static int failures;
+
+    static void check(String what, boolean ok) {
+        if (!ok) {
+            System.out.println("FAIL " + what);
+            failures++;
+        }
+    }
+
+    // a call before load must throw IllegalStateException, every time
+    static void checkNotLoaded(String what, Runnable call) {
+        for (int i=0; i<2; i++) {
+            try {
+                call.run();
+                check(what + " throws before load", false);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        String library = args.length > 0 ? args[0] : "dist/libbdgl_java_stub.so";
+
+        try (Arena arena = Arena.ofConfined()) {
+            GL33Core.LoadProc stub = GL33Core.LoadProc.of(SymbolLookup.libraryLookup(Path.of(library), arena));
+            MemorySegment other = stub.load("stub_other");
+            GL33Core.LoadProc loadproc = name -> {
+                MemorySegment address = stub.load(name);
+                return address.equals(MemorySegment.NULL) ? other : address;
+            };
+
+            checkNotLoaded("glClear", () -> GL33Core.glClear(0x4100));
+
+            check("loadVersion with missing commands fails", GL33Core.loadVersion(GL33Core.GL_VERSION_1_0, stub) != 0);
+            check("GL_VERSION_1_0 not loaded", !GL33Core.GL_VERSION_1_0.loaded());
+
+            check("loadVersion", GL33Core.loadVersion(GL33Core.GL_VERSION_1_0, loadproc) == 0);
+            check("GL_VERSION_1_0 loaded", GL33Core.GL_VERSION_1_0.loaded());
+            check("context version", GL33Core.contextMajor() == 3 && GL33Core.contextMinor() == 3);
+
+            GL33Core.glClear(0x4100);
+            check("glClear/glGetError round trip", GL33Core.glGetError() == 0x4100);
+
+            check("haveExt", GL33Core.haveExt("GL_ARB_stub_two"));
+            check("haveExt missing", !GL33Core.haveExt("GL_ARB_missing"));
+            check("extCount", GL33Core.extCount() == 2);
+
+            check("loadAll", GL33Core.loadAll(loadproc) == 0);
+
+            // glBindFramebuffer is in GL_VERSION_3_0 and GL_ARB_framebuffer_object,
+            // loading only the extension links it
+            GL33Fleet.LoadProc fleetproc = loadproc::load;
+            check("fleet loadVersion", GL33Fleet.loadVersion(GL33Fleet.GL_VERSION_1_0, fleetproc) == 0);
+            checkNotLoaded("glBindFramebuffer", () -> GL33Fleet.glBindFramebuffer(0x8D40, 7));
+            check("fleet loadExtension", GL33Fleet.loadExtension(GL33Fleet.GL_ARB_framebuffer_object, fleetproc) == 0);
+            check("GL_VERSION_3_0 not loaded", !GL33Fleet.GL_VERSION_3_0.loaded());
+            GL33Fleet.glBindFramebuffer(0x8D40, 7);
+            check("shared command linked by its extension", GL33Fleet.glGetError() == 7);
+        }
+
+        System.out.println(failures == 0 ? "ok" : "FAIL");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
@@ -30,6 +30,13 @@ bdgl_def(glGetString, const GLubyte*, (GLenum name), GL_VERSION_1_0, 0, (name))
 bdgl_def(glGetStringi, const GLubyte*, (GLenum name,GLuint index), GL_VERSION_1_0, 1, (name,index))
 bdgl_defv(glGetIntegerv, (GLenum pname, GLint* data), GL_VERSION_1_0, 2, (pname,data))
 
+#define BDGL_FINGERPRINT 0ull
+#define BDGL_EXTENSION_COUNT 0
+#define BDGL_ENUM_GROUP_COUNT 0
+#ifdef BDGL_IMPL
+bdgl_Extension* bdgl_extensions[BDGL_EXTENSION_COUNT+1] = { 0 };
+#endif
+
 #include "bdgl_suffix.h"
 
 #ifdef BDGL_IMPL
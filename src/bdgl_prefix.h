@@ -6,6 +6,7 @@
 #define __gl_h_
 
 #include <stdint.h>
+#include <stdatomic.h>
 
 
 #if defined(_WIN32) && !defined(APIENTRY) && !defined(__CYGWIN__) && !defined(__SCITECH_SNAP__)
@@ -19,18 +20,72 @@
 typedef struct {
     uint8_t major;
     uint8_t minor;
-    uint8_t loaded; // 1 if version was successfully loaded
+    _Atomic uint8_t loaded; // 1 if version was successfully loaded
+    _Atomic uint8_t lock; // held while a thread is loading this version
     const char* names;
     void** funcs;
+    const char* hotNames; // commands in the shared hot table (or NULL)
+    void** hotFuncs;
 } bdgl_Version;
 
 typedef struct {
-    uint8_t loaded; // 1 if extension was successfully loaded
+    _Atomic uint8_t loaded; // 1 if extension was successfully loaded
+    _Atomic uint8_t lock; // held while a thread is loading this extension
+    _Atomic uint8_t present; // 0: unknown (check the extension list), 1: present, 2: not present
+    const char* name; // extension name, checked against the context's extension list
     const char* names;
     void** funcs;
+    const char* hotNames; // commands in the shared hot table (or NULL)
+    void** hotFuncs;
 } bdgl_Extension;
 
-#ifdef BDGL_IMPL
+// enum group value -> name tables (see bdgl_enum_name)
+typedef struct {
+    uint32_t value;
+    uint32_t name; // index into the enum names table (0: empty slot)
+} bdgl_EnumSlot;
+
+typedef struct {
+    uint32_t slots; // first slot of this group's table
+    uint32_t disp; // first bucket displacement of this group
+    uint8_t shift; // slot:   ((value ^ disp[bucket]) * BDGL_ENUM_SLOT_HASH) >> shift
+    uint8_t bucketShift; // bucket: (value * BDGL_ENUM_BUCKET_HASH) >> bucketShift
+} bdgl_EnumGroup;
+
+#if defined(_MSC_VER)
+#define BDGL_FORCEINLINE __forceinline
+#elif defined(__GNUC__) || defined(__clang__)
+#define BDGL_FORCEINLINE inline __attribute__((always_inline))
+#else
+#define BDGL_FORCEINLINE inline
+#endif
+
+#if defined(BDGL_THREADED)
+
+// generated with --threaded: each command is a queue marshalling function
+// (generated after bdgl_suffix.h), so only declare them here
+// note: BDGL_INLINE has no effect
+
+#define bdgl_def(command, ret, sig, fp, index, call) ret APIENTRY command sig;
+#define bdgl_defv(command, sig, fp, index, call) void APIENTRY command sig;
+
+#elif defined(BDGL_INLINE)
+
+// every translation unit gets its own static inline wrapper, which reads the
+// (extern) function pointer table directly, so every call site compiles to a
+// single indirect call/jmp (without relying on LTO)
+// note: BDGL_INLINE must be defined the same way in every translation unit
+//       (including the BDGL_IMPL one)
+
+#define bdgl_def(command, ret, sig, fp, index, call) static BDGL_FORCEINLINE ret APIENTRY command sig { \
+    return ((ret (*)sig)bdgl_fp_##fp[index])call; \
+}
+
+#define bdgl_defv(command, sig, fp, index, call) static BDGL_FORCEINLINE void APIENTRY command sig { \
+    ((void (*)sig)bdgl_fp_##fp[index])call; \
+}
+
+#elif defined(BDGL_IMPL)
 
 #define bdgl_def(command, ret, sig, fp, index, call) ret APIENTRY command sig { \
     return ((ret (*)sig)bdgl_fp_##fp[index])call; \
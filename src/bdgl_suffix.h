@@ -11,43 +11,195 @@ int bdgl_min_context(uint8_t major, uint8_t minor);
 const char* bdgl_load(void** funcs, const char* funcNames, bdgl_loadproc loadproc);
 // will fail if context version
 int bdgl_load_version(bdgl_Version* version, bdgl_loadproc loadproc);
-// bdgl_have_ext(name) should be called before loading the extension
+// will fail if the extension isn't in the context's extension list
 int bdgl_load_extension(bdgl_Extension* extension, bdgl_loadproc loadproc);
 
 // load all generated versions
 int bdgl_load_all(bdgl_loadproc loadproc);
 
-// fetch/parse extension list (required for other ext functions to work)
-void bdgl_ext_init();
+// fetch/parse extension list
+// (optional, called lazily by the other ext functions and bdgl_load_extension)
+int bdgl_ext_init();
 uint32_t bdgl_get_ext_count();
 int bdgl_have_ext(const char* extName);
-// after calling, no extension functions can be called
+// after calling, the next ext function call will re-fetch the extension list
+// note: must not be called while other threads may be using ext functions
 void bdgl_ext_free();
 
+// name of 'value' in an enum group (BDGL_ENUM_GROUP_x), or NULL if the group has no
+// generated enum with that value (e.g. bdgl_enum_name(BDGL_ENUM_GROUP_PrimitiveType, GL_TRIANGLES))
+// note: no allocation or locking, can be called without a context
+const char* bdgl_enum_name(uint32_t group, uint32_t value);
+
+#ifdef BDGL_CAPS_CACHE
+// per-driver capability cache (POSIX only)
+// the cache is keyed by GL_VENDOR/GL_RENDERER/GL_VERSION and BDGL_FINGERPRINT
+// returns 0 if the cache at 'path' matches, and marks each generated extension as
+// present/not present (so bdgl_load_extension doesn't need to fetch the extension list)
+int bdgl_caps_load(const char* path, bdgl_loadproc loadproc);
+// write the current context's capabilities to 'path' (fetches the extension list if needed)
+// returns 1 without writing if the extension list can't be fetched
+int bdgl_caps_save(const char* path);
+#endif
+
+#ifdef BDGL_ELF_RESOLVER
+// bulk resolver (Linux/ELF only, the BDGL_IMPL translation unit needs _GNU_SOURCE
+// defined before any include, for dlinfo/dl_iterate_phdr)
+// dlopens 'library' (path or soname, e.g. "libGL.so.1") once and looks names up
+// directly in its .gnu.hash/.dynsym, without going through dlsym/glXGetProcAddress:
+//   bdgl_elf_load_all("libGL.so.1", (bdgl_loadproc)glfwGetProcAddress);
+// names the library doesn't export (e.g. extension-only entry points) are resolved
+// with 'fallback'. returns 0 on success, 1 if the library couldn't be opened or has
+// no .gnu.hash (bdgl_elf_loadproc then only uses 'fallback')
+int bdgl_elf_open(const char* library, bdgl_loadproc fallback);
+void* bdgl_elf_loadproc(char* name);
+// bdgl_elf_open, then bdgl_load_all with bdgl_elf_loadproc: one pass over every
+// generated version's manifest against the opened library (the handle stays open
+// until bdgl_elf_close). returns bdgl_load_all's result
+int bdgl_elf_load_all(const char* library, bdgl_loadproc fallback);
+// releases the library handle, bdgl_elf_loadproc keeps using 'fallback'
+// note: open/close must not be called while other threads may be loading
+void bdgl_elf_close();
+#endif
+
+#ifdef BDGL_THREADED
+// deferred dispatch to a GL worker thread (header generated with --threaded, POSIX only)
+// void calls with copyable arguments are recorded into a single-producer/single-consumer
+// queue and executed by the worker, other calls wait until the worker has executed them
+//   bdgl_thread_init(1 << 20);
+//   worker thread: make the context current, bdgl_load_all(loadproc), bdgl_thread_run()
+//   app thread:    GL calls as usual, then bdgl_thread_stop()
+// note: GL calls must be made from a single (app) thread, the worker calls the driver.
+//       before bdgl_thread_init and after bdgl_thread_stop, calls go straight to the driver
+// capacity: queue size in bytes (power of 2, 4KB to 256MB)
+int bdgl_thread_init(uint32_t capacity);
+// worker loop, returns after bdgl_thread_stop (or right away if there's no queue,
+// or bdgl_thread_stop was already called)
+void bdgl_thread_run();
+// wait until every queued call has executed
+// note: needs a worker in (or about to enter) bdgl_thread_run, like any synchronous call
+void bdgl_thread_flush();
+// wait until every queued call has executed and bdgl_thread_run has returned, then
+// free the queue.  if bdgl_thread_run was never called, returns right away and drops
+// anything queued (and a later bdgl_thread_run returns immediately)
+void bdgl_thread_stop();
+#endif
+
+#ifdef BDGL_STATE_CACHE
+// shadow state (header generated with --state-cache)
+// the cached commands (see the generated bdgl_State) remember what they last set and
+// drop calls that wouldn't change it, per context.  GL binds a context to a thread,
+// so does bdgl: each thread uses the state bound with bdgl_state_bind (or one shared
+// default state, fine for a single context)
+//   static bdgl_State state; // zero initialized: nothing known yet
+//   make the context current, then bdgl_state_bind(&state)
+// note: only tracks calls made through bdgl, if other code (or a failed call) changes
+//       GL state, call bdgl_state_invalidate
+// state: NULL for the default state
+void bdgl_state_bind(bdgl_State* state);
+// forget everything the bound state knows (keeps the counters)
+void bdgl_state_invalidate();
+// calls the bound state's cached commands dropped/passed on to the driver
+void bdgl_state_stats(uint64_t* hits, uint64_t* misses);
+#endif
+
+// thread safety:
+//  all of the above (except bdgl_ext_free) can be called from multiple threads.
+//  context parsing, extension fetching, and each version/extension load happen
+//  once, concurrent callers wait for the first caller to finish.
+//  once done, checking 'loaded' or calling bdgl_have_ext is a single acquire load
+//  followed by read-only access (no locking)
+
 
 #ifdef BDGL_IMPL
 
 #include <string.h>
 #include <stdlib.h>
 
+// GL enums used by the loader itself
+// (not all generated headers will define these, e.g. GL_NUM_EXTENSIONS is 3.0+)
+#define BDGL_GL_EXTENSIONS 0x1F03
+#define BDGL_GL_NUM_EXTENSIONS 0x821D
+#define BDGL_GL_CONTEXT_FLAGS 0x821E
+#define BDGL_GL_CONTEXT_PROFILE_MASK 0x9126
+#define BDGL_GL_CONTEXT_FLAG_FORWARD_COMPATIBLE_BIT 0x1
+#define BDGL_GL_CONTEXT_COMPATIBILITY_PROFILE_BIT 0x2
+
 static struct {
+    _Atomic uint8_t ready; // 1 once the context version has been parsed
+    _Atomic uint8_t lock;
     uint8_t major;
     uint8_t minor;
+    bdgl_loadproc loadproc; // loadproc the context was parsed with (used to lazily fetch extensions)
 } bdgl_ctx;
 
 static struct {
+    _Atomic uint8_t ready; // 1 once the table has been built
+    _Atomic uint8_t lock;
+
     uint32_t tblSize;
     uint32_t* tbl; // table of entries (offset/len into pool)
 
-    uint8_t* pool; // constant pool of strings
+    const uint8_t* pool; // constant pool of strings
     uint32_t poolSize;
     uint32_t poolCapacity;
+    uint8_t poolOwned; // 0 if the pool is the driver's GL_EXTENSIONS string (not freed)
 
     uint32_t extCount; // number of extensions found
 
 } bdgl_exts_tbl;
 
+#if defined(_WIN32)
+// (not including windows.h for this one)
+__declspec(dllimport) int __stdcall SwitchToThread(void);
+#define bdgl_yield() SwitchToThread()
+#else
+#include <sched.h>
+#define bdgl_yield() sched_yield()
+#endif
+
+#if defined(_MSC_VER) && (defined(_M_X64) || defined(_M_IX86))
+#include <intrin.h>
+#define bdgl_pause() _mm_pause()
+#elif (defined(__GNUC__) || defined(__clang__)) && (defined(__x86_64__) || defined(__i386__))
+#define bdgl_pause() __builtin_ia32_pause()
+#elif (defined(__GNUC__) || defined(__clang__)) && defined(__aarch64__)
+#define bdgl_pause() __asm__ __volatile__("yield")
+#else
+#define bdgl_pause() ((void)0)
+#endif
+
+// spin for a while, then give up the time slice
+static void bdgl_backoff(uint32_t* spins) {
+    if (*spins < 256) {
+        (*spins)++;
+        bdgl_pause();
+    } else {
+        bdgl_yield();
+    }
+}
+
+// lock guarding one-time initialization
+// (only contended while another thread is making the driver calls to initialize,
+// which can take milliseconds, so waiters back off instead of busy spinning)
+static void bdgl_lock(_Atomic uint8_t* lock) {
+    uint32_t spins = 0;
+    while ( atomic_exchange_explicit(lock, 1, memory_order_acquire) ) {
+        while ( atomic_load_explicit(lock, memory_order_relaxed) ) {
+            // wait for the holder to finish
+            bdgl_backoff(&spins);
+        }
+    }
+}
+
+static void bdgl_unlock(_Atomic uint8_t* lock) {
+    atomic_store_explicit(lock, 0, memory_order_release);
+}
+
 uint32_t bdgl_get_ext_count() {
+    if ( bdgl_ext_init() ) {
+        return 0;
+    }
     return bdgl_exts_tbl.extCount;
 }
 
@@ -106,16 +258,13 @@ const char* bdgl_load(void** funcs, const char* funcNames, bdgl_loadproc loadpro
     return 0; // shouldn't even get here out of while loop
 }
 
-int bdgl_init(bdgl_loadproc loadproc) {
-    if (bdgl_ctx.major > 0) {
-        // we already parsed the version, return success
-        return 0;
-    }
+static int bdgl_parse_context(bdgl_loadproc loadproc) {
     const uint8_t* (*glGetString)(unsigned int);
     *(void**)(&glGetString) = loadproc("glGetString");
     if (glGetString == 0) {
         return 1;
     }
+    bdgl_ctx.loadproc = loadproc;
 
     // use GL context
     const uint8_t* gl_version = glGetString(GL_VERSION); // since GL 2.0
@@ -170,8 +319,27 @@ int bdgl_init(bdgl_loadproc loadproc) {
     return 0;
 }
 
+int bdgl_init(bdgl_loadproc loadproc) {
+    if ( atomic_load_explicit(&bdgl_ctx.ready, memory_order_acquire) ) {
+        // we already parsed the version, return success
+        return 0;
+    }
+
+    bdgl_lock(&bdgl_ctx.lock);
+    int result = 0;
+    if ( !atomic_load_explicit(&bdgl_ctx.ready, memory_order_relaxed) ) {
+        // first caller parses the version (or retries, if a previous parse failed)
+        result = bdgl_parse_context(loadproc);
+        if (result == 0) {
+            atomic_store_explicit(&bdgl_ctx.ready, 1, memory_order_release);
+        }
+    }
+    bdgl_unlock(&bdgl_ctx.lock);
+    return result;
+}
+
 int bdgl_load_version(bdgl_Version* version, bdgl_loadproc loadproc) {
-    if (version->loaded) {
+    if ( atomic_load_explicit(&version->loaded, memory_order_acquire) ) {
         // we already loaded this version
         return 0;
     }
@@ -190,16 +358,26 @@ int bdgl_load_version(bdgl_Version* version, bdgl_loadproc loadproc) {
 
     //     return 1;
     // }
-    const char* failed = bdgl_load((void**)version->funcs, version->names, loadproc);
-    if (failed != 0) {
-        return 1;
+    bdgl_lock(&version->lock);
+    int result = 0;
+    if ( !atomic_load_explicit(&version->loaded, memory_order_relaxed) ) {
+        const char* failed = bdgl_load((void**)version->funcs, version->names, loadproc);
+        if (failed == 0 && version->hotNames != 0) {
+            failed = bdgl_load(version->hotFuncs, version->hotNames, loadproc);
+        }
+        if (failed != 0) {
+            result = 1;
+        } else {
+            // mark this version as loaded (publishes the function pointers)
+            atomic_store_explicit(&version->loaded, 1, memory_order_release);
+        }
     }
-    version->loaded = 1; // mark this version as loaded
-    return 0;
+    bdgl_unlock(&version->lock);
+    return result;
 }
 
 int bdgl_load_extension(bdgl_Extension* extension, bdgl_loadproc loadproc) {
-    if (extension->loaded) {
+    if ( atomic_load_explicit(&extension->loaded, memory_order_acquire) ) {
         // we already loaded this extension
         return 0;
     }
@@ -209,14 +387,31 @@ int bdgl_load_extension(bdgl_Extension* extension, bdgl_loadproc loadproc) {
         return 1;
     }
 
-    // FIXME lazily query/parse extension list
-
-    const char* failed = bdgl_load((void**)extension->funcs, extension->names, loadproc);
-    if (failed != 0) {
+    uint8_t present = atomic_load_explicit(&extension->present, memory_order_acquire);
+    if (present == 0) {
+        // note: fetches the extension list on first use
+        present = bdgl_have_ext(extension->name) ? 1 : 2;
+    }
+    if (present != 1) {
         return 1;
     }
-    extension->loaded = 1; // mark this version as loaded
-    return 0;
+
+    bdgl_lock(&extension->lock);
+    int result = 0;
+    if ( !atomic_load_explicit(&extension->loaded, memory_order_relaxed) ) {
+        const char* failed = bdgl_load((void**)extension->funcs, extension->names, loadproc);
+        if (failed == 0 && extension->hotNames != 0) {
+            failed = bdgl_load(extension->hotFuncs, extension->hotNames, loadproc);
+        }
+        if (failed != 0) {
+            result = 1;
+        } else {
+            // mark this extension as loaded (publishes the function pointers)
+            atomic_store_explicit(&extension->loaded, 1, memory_order_release);
+        }
+    }
+    bdgl_unlock(&extension->lock);
+    return result;
 }
 
 
@@ -246,11 +441,17 @@ static uint32_t bdgl_strhash(const char* s, int* outLen) {
     }
 }
 
-void bdgl_ext_init() {
-
-    GLint extCount=0;
-    glGetIntegerv(GL_NUM_EXTENSIONS, &extCount);
+// same hash as bdgl_strhash, but for strings that aren't null terminated
+static uint32_t bdgl_memhash(const uint8_t* s, int len) {
+    uint32_t hash = 31;
+    for (int i=0; i<len; i++) {
+        hash = bdgl_hash32(hash ^ (char)s[i]);
+    }
+    return hash;
+}
 
+// returns 1 if the table couldn't be allocated
+static int bdgl_ext_alloc_table(uint32_t extCount) {
     // find minimum power-of-2 table size
     uint32_t minTableSize = extCount + (extCount/2);
     uint32_t tableSize = 32;
@@ -259,8 +460,128 @@ void bdgl_ext_init() {
     };
 
     bdgl_exts_tbl.tbl = (uint32_t*)calloc( tableSize, sizeof(uint32_t) );
+    if (bdgl_exts_tbl.tbl == NULL) {
+        return 1;
+    }
     bdgl_exts_tbl.tblSize = tableSize;
     bdgl_exts_tbl.extCount = extCount;
+    return 0;
+}
+
+// insert the string pool[offset:offset+len) into the table
+static void bdgl_ext_insert(uint32_t offset, uint32_t len, uint32_t hash) {
+
+    uint32_t* tbl = bdgl_exts_tbl.tbl;
+    uint32_t tblSize = bdgl_exts_tbl.tblSize;
+
+    // entry:  [offset:u16  | probeCount:u8 | len:u8]
+    uint32_t newEntry = (((uint32_t)offset) << 16) | (uint32_t)len;
+    int probeCount = 0;
+    uint32_t idx = hash;
+    while (1) {
+        idx = idx % tblSize; // initial mod, plus wrap-around
+
+        uint32_t slotEntry = tbl[idx];
+
+        if (slotEntry == 0) {
+            // found an empty slot, set it
+            tbl[idx] = newEntry | (((uint32_t)probeCount) << 8);
+            break;
+        }
+
+        // robin hood: entry with higher probe count gets to keep the slot
+        uint8_t slotDisp = (slotEntry >> 8) & 0xff;
+        if (probeCount > slotDisp) {
+            // steal the slot, and evicted entry is now the probe entry
+            // (mask out the existing probe count so we can just OR later)
+            // and we're continuing the evicted entry probe count
+            tbl[idx] = newEntry | (((uint32_t)probeCount) << 8);
+            newEntry = slotEntry & 0xffff00ff;
+            probeCount = slotDisp;
+        }
+        idx++;
+        probeCount++;
+    }
+}
+
+// returns 1 if glGetString(GL_EXTENSIONS) is valid for the current context
+static int bdgl_ext_legacy_ok(void (*glGetIntegerv)(unsigned int, int*)) {
+    if (bdgl_ctx.major < 3) {
+        // glGetStringi doesn't exist yet
+        return 1;
+    }
+    if (glGetIntegerv == 0) {
+        return 0;
+    }
+    int flags = 0;
+    if (bdgl_ctx.major == 3 && bdgl_ctx.minor == 0) {
+        // 3.0 only removes GL_EXTENSIONS for forward compatible contexts
+        glGetIntegerv(BDGL_GL_CONTEXT_FLAGS, &flags);
+        return (flags & BDGL_GL_CONTEXT_FLAG_FORWARD_COMPATIBLE_BIT) == 0;
+    }
+    if (bdgl_ctx.major == 3 && bdgl_ctx.minor == 1) {
+        // 3.1 only keeps it with GL_ARB_compatibility, which we can't check
+        // without the extension list
+        return 0;
+    }
+    // 3.2+ keeps it in the compatibility profile
+    glGetIntegerv(BDGL_GL_CONTEXT_PROFILE_MASK, &flags);
+    return (flags & BDGL_GL_CONTEXT_COMPATIBILITY_PROFILE_BIT) != 0;
+}
+
+// index the space-separated glGetString(GL_EXTENSIONS) string in place
+// (the driver owns the string, so the table just points into it)
+static int bdgl_ext_init_legacy(const uint8_t* exts) {
+
+    // entry offsets are u16
+    uint32_t extsLen = strlen((const char*)exts);
+    if (extsLen > 0xffff) {
+        return 1;
+    }
+
+    // count extensions so we can size the table up front
+    uint32_t extCount = 0;
+    uint8_t last = ' ';
+    for (uint32_t i=0; i<extsLen; i++) {
+        if (exts[i] != ' ' && last == ' ') {
+            extCount++;
+        }
+        last = exts[i];
+    }
+
+    if ( bdgl_ext_alloc_table(extCount) ) {
+        return 1;
+    }
+    bdgl_exts_tbl.pool = exts;
+    bdgl_exts_tbl.poolSize = extsLen;
+    bdgl_exts_tbl.poolCapacity = extsLen;
+    bdgl_exts_tbl.poolOwned = 0;
+
+    uint32_t begin = 0;
+    for (uint32_t i=0; i<=extsLen; i++) {
+        if (i == extsLen || exts[i] == ' ') {
+            // token is: exts[begin:i)
+            uint32_t len = i - begin;
+            if (len > 0 && len <= 0xff) {
+                bdgl_ext_insert(begin, len, bdgl_memhash(&exts[begin], len));
+            }
+            begin = i+1;
+        }
+    }
+    return 0;
+}
+
+// copy each glGetStringi(GL_EXTENSIONS, i) name into our own constant pool
+static int bdgl_ext_init_indexed(
+    void (*glGetIntegerv)(unsigned int, int*),
+    const uint8_t* (*glGetStringi)(unsigned int, unsigned int)) {
+
+    int extCount=0;
+    glGetIntegerv(BDGL_GL_NUM_EXTENSIONS, &extCount);
+
+    if ( bdgl_ext_alloc_table(extCount) ) {
+        return 1;
+    }
 
     // find minimum power-of-2 pool capacity
     //  * extension names average 25 characters
@@ -270,69 +591,134 @@ void bdgl_ext_init() {
     while (poolCap < minPoolCap) {
         poolCap *= 2;
     }
-    bdgl_exts_tbl.pool = malloc(poolCap);
-    bdgl_exts_tbl.poolCapacity = poolCap;
-    bdgl_exts_tbl.poolSize = 0;
-
-    uint32_t* tbl = bdgl_exts_tbl.tbl;
-    uint32_t tblSize = bdgl_exts_tbl.tblSize;
+    uint8_t* pool = malloc(poolCap);
+    if (pool == NULL) {
+        return 1;
+    }
+    uint32_t poolSize = 0;
 
     for (int i=0; i<extCount; i++) {
-        const GLubyte* extName = glGetStringi(GL_EXTENSIONS, i);
+        const uint8_t* extName = glGetStringi(BDGL_GL_EXTENSIONS, i);
+        if (extName == 0) {
+            continue;
+        }
 
         int extNameLen;
         uint32_t hash = bdgl_strhash((const char*)extName, &extNameLen);
+        if (extNameLen == 0 || extNameLen > 0xff || poolSize + extNameLen > 0xffff) {
+            // doesn't fit in a table entry
+            continue;
+        }
 
         // ensure pool capacity
-        while (extNameLen > (bdgl_exts_tbl.poolCapacity - bdgl_exts_tbl.poolSize)) {
-            bdgl_exts_tbl.poolCapacity *= 2;
-            bdgl_exts_tbl.pool = realloc(bdgl_exts_tbl.pool, bdgl_exts_tbl.poolCapacity);
+        while (extNameLen > (poolCap - poolSize)) {
+            poolCap *= 2;
+            uint8_t* grown = realloc(pool, poolCap);
+            if (grown == NULL) {
+                free(pool);
+                return 1;
+            }
+            pool = grown;
         }
 
         // copy/append string to constant pool
-        uint16_t offset = bdgl_exts_tbl.poolSize;
-        memcpy(&bdgl_exts_tbl.pool[offset], extName, extNameLen);
-        bdgl_exts_tbl.poolSize += extNameLen;
-
-        // entry:  [offset:u16  | probeCount:u8 | len:u8]
-        uint32_t newEntry = (((uint32_t)offset) << 16) | (uint32_t)extNameLen;
-        int probeCount = 0;
-        uint32_t idx = hash;
-        while (1) {
-            idx = idx % tblSize; // initial mod, plus wrap-around
-
-            uint32_t slotEntry = tbl[idx];
-
-            if (slotEntry == 0) {
-                // found an empty slot, set it
-                tbl[idx] = newEntry | (((uint32_t)probeCount) << 8);
-                break;
-            }
+        uint16_t offset = poolSize;
+        memcpy(&pool[offset], extName, extNameLen);
+        poolSize += extNameLen;
 
-            // robin hood: entry with higher probe count gets to keep the slot
-            uint8_t slotDisp = (slotEntry >> 8) & 0xff;
-            if (probeCount > slotDisp) {
-                // steal the slot, and evicted entry is now the probe entry
-                // (mask out the existing probe count so we can just OR later)
-                // and we're continuing the evicted entry probe count
-                tbl[idx] = newEntry | (((uint32_t)probeCount) << 8);
-                newEntry = slotEntry & 0xffff00ff;
-                probeCount = slotDisp;
-            }
-            idx++;
-            probeCount++;
+        bdgl_ext_insert(offset, extNameLen, hash);
+    }
+
+    bdgl_exts_tbl.pool = pool;
+    bdgl_exts_tbl.poolSize = poolSize;
+    bdgl_exts_tbl.poolCapacity = poolCap;
+    bdgl_exts_tbl.poolOwned = 1;
+    return 0;
+}
+
+static void bdgl_ext_release() {
+    free( bdgl_exts_tbl.tbl );
+    bdgl_exts_tbl.tbl = NULL;
+
+    if (bdgl_exts_tbl.poolOwned) {
+        free( (void*)bdgl_exts_tbl.pool );
+    }
+    bdgl_exts_tbl.pool = NULL;
+    bdgl_exts_tbl.poolOwned = 0;
+    bdgl_exts_tbl.extCount = 0;
+}
+
+static int bdgl_ext_fetch() {
+
+    bdgl_loadproc loadproc = bdgl_ctx.loadproc;
+    if (loadproc == 0) {
+        return 1;
+    }
+
+    // note: resolve directly through loadproc rather than the generated
+    //       wrappers, since they might not be loaded (or generated at all)
+    const uint8_t* (*glGetString)(unsigned int);
+    const uint8_t* (*glGetStringi)(unsigned int, unsigned int);
+    void (*glGetIntegerv)(unsigned int, int*);
+    *(void**)(&glGetString) = loadproc("glGetString");
+    *(void**)(&glGetStringi) = loadproc("glGetStringi");
+    *(void**)(&glGetIntegerv) = loadproc("glGetIntegerv");
+
+    // fast path: a single driver call for the whole list
+    if ( glGetString != 0 && bdgl_ext_legacy_ok(glGetIntegerv) ) {
+        const uint8_t* exts = glGetString(BDGL_GL_EXTENSIONS);
+        if ( exts != 0 && bdgl_ext_init_legacy(exts) == 0 ) {
+            return 0;
+        }
+        bdgl_ext_release();
+    }
+
+    // core profile: one driver call per extension
+    if ( glGetStringi != 0 && glGetIntegerv != 0 && bdgl_min_context(3,0) ) {
+        if ( bdgl_ext_init_indexed(glGetIntegerv, glGetStringi) == 0 ) {
+            return 0;
+        }
+        bdgl_ext_release();
+    }
+    return 1;
+}
+
+int bdgl_ext_init() {
+    if ( atomic_load_explicit(&bdgl_exts_tbl.ready, memory_order_acquire) ) {
+        // already fetched
+        return 0;
+    }
+
+    if ( !atomic_load_explicit(&bdgl_ctx.ready, memory_order_acquire) ) {
+        // no context parsed yet (bdgl_init or a bdgl_load_* function must be called first)
+        return 1;
+    }
+
+    bdgl_lock(&bdgl_exts_tbl.lock);
+    int result = 0;
+    if ( !atomic_load_explicit(&bdgl_exts_tbl.ready, memory_order_relaxed) ) {
+        result = bdgl_ext_fetch();
+        if (result == 0) {
+            atomic_store_explicit(&bdgl_exts_tbl.ready, 1, memory_order_release);
         }
     }
+    bdgl_unlock(&bdgl_exts_tbl.lock);
+    return result;
 }
 
 int bdgl_have_ext(const char* extName) {
 
+    if ( bdgl_ext_init() ) {
+        // no extension list
+        return 0;
+    }
+
     int extNameLen;
     uint32_t hash = bdgl_strhash((const char*)extName, &extNameLen);
 
     uint32_t* tbl = bdgl_exts_tbl.tbl;
     uint32_t tblSize = bdgl_exts_tbl.tblSize;
-    uint8_t* pool = bdgl_exts_tbl.pool;
+    const uint8_t* pool = bdgl_exts_tbl.pool;
 
     int probeCount = 0;
 
@@ -373,12 +759,618 @@ int bdgl_have_ext(const char* extName) {
     }
 }
 
-void bdgl_ext_free() {
-    free( bdgl_exts_tbl.tbl );
-    bdgl_exts_tbl.tbl = NULL;
+// hash constants used by the generator's enum group tables
+#define BDGL_ENUM_BUCKET_HASH 0x9E3779B1u
+#define BDGL_ENUM_SLOT_HASH 0x85EBCA6Bu
+
+const char* bdgl_enum_name(uint32_t group, uint32_t value) {
+#if BDGL_ENUM_GROUP_COUNT > 0
+    if (group < BDGL_ENUM_GROUP_COUNT) {
+        const bdgl_EnumGroup* enumGroup = &bdgl_enum_groups[group];
+        // perfect hash, every value in the group has its own slot
+        uint32_t bucket = (value * BDGL_ENUM_BUCKET_HASH) >> enumGroup->bucketShift;
+        uint32_t disp = bdgl_enum_disp[enumGroup->disp + bucket];
+        const bdgl_EnumSlot* slot = &bdgl_enum_slots[enumGroup->slots + (((value ^ disp) * BDGL_ENUM_SLOT_HASH) >> enumGroup->shift)];
+        if (slot->name != 0 && slot->value == value) {
+            return bdgl_enum_names[slot->name];
+        }
+    }
+#else
+    (void)group;
+    (void)value;
+#endif
+    return 0;
+}
 
-    free( bdgl_exts_tbl.pool );
-    bdgl_exts_tbl.pool = NULL;
+#ifdef BDGL_CAPS_CACHE
+
+#include <stdio.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+
+// file layout:
+//   bdgl_CapsHeader (including the context's profile mask and flags)
+//   key:    GL_VENDOR\0GL_RENDERER\0GL_VERSION\0  (keyLen bytes)
+//   bitmap: 1 bit per bdgl_extensions[] entry    ((extCount+7)/8 bytes)
+typedef struct {
+    char magic[8];
+    uint64_t fingerprint;
+    uint32_t extCount;
+    uint32_t keyLen;
+    uint8_t major;
+    uint8_t minor;
+    uint8_t pad[2];
+    // the same driver exposes a different extension list to a core/compatibility
+    // or debug/forward compatible context of the same version
+    int32_t profileMask;
+    int32_t contextFlags;
+    uint8_t pad2[4];
+} bdgl_CapsHeader;
+
+static const char bdgl_caps_magic[8] = { 'B','D','G','L','C','A','P','2' };
+
+// fetch the cache key strings, profile mask and context flags from the current context
+// returns the total length of the key (including null terminators) or 0 on failure
+static uint32_t bdgl_caps_key(bdgl_loadproc loadproc, const char* key[3], int32_t ctxBits[2]) {
+    const uint8_t* (*glGetString)(unsigned int);
+    *(void**)(&glGetString) = loadproc("glGetString");
+    if (glGetString == 0) {
+        return 0;
+    }
+
+    // 0 for contexts that don't have them (querying them would set a GL error)
+    ctxBits[0] = 0;
+    ctxBits[1] = 0;
+    if (bdgl_ctx.major >= 3) {
+        void (*glGetIntegerv)(unsigned int, int*);
+        *(void**)(&glGetIntegerv) = loadproc("glGetIntegerv");
+        if (glGetIntegerv == 0) {
+            return 0;
+        }
+        int value = 0;
+        glGetIntegerv(BDGL_GL_CONTEXT_FLAGS, &value);
+        ctxBits[1] = value;
+        if (bdgl_ctx.major > 3 || bdgl_ctx.minor >= 2) {
+            value = 0;
+            glGetIntegerv(BDGL_GL_CONTEXT_PROFILE_MASK, &value);
+            ctxBits[0] = value;
+        }
+    }
+
+    uint32_t keyLen = 0;
+    for (int i=0; i<3; i++) {
+        // GL_VENDOR, GL_RENDERER, GL_VERSION
+        key[i] = (const char*)glGetString(0x1F00 + i);
+        if (key[i] == 0) {
+            return 0;
+        }
+        keyLen += strlen(key[i]) + 1;
+    }
+    return keyLen;
+}
+
+int bdgl_caps_load(const char* path, bdgl_loadproc loadproc) {
+
+    if ( bdgl_init(loadproc) ) {
+        return 1;
+    }
+
+    const char* key[3];
+    int32_t ctxBits[2];
+    uint32_t keyLen = bdgl_caps_key(loadproc, key, ctxBits);
+    if (keyLen == 0) {
+        return 1;
+    }
+
+    int fd = open(path, O_RDONLY);
+    if (fd < 0) {
+        return 1;
+    }
+    struct stat st;
+    if (fstat(fd, &st) != 0 || st.st_size < (off_t)sizeof(bdgl_CapsHeader)) {
+        close(fd);
+        return 1;
+    }
+    size_t size = st.st_size;
+    const uint8_t* file = mmap(NULL, size, PROT_READ, MAP_PRIVATE, fd, 0);
+    close(fd);
+    if (file == MAP_FAILED) {
+        return 1;
+    }
+
+    const bdgl_CapsHeader* header = (const bdgl_CapsHeader*)file;
+    const uint8_t* fileKey = file + sizeof(bdgl_CapsHeader);
+    const uint8_t* bitmap = fileKey + keyLen;
+
+    // any mismatch means a different driver/GPU or header, so fall back to
+    // fetching the extension list
+    int result = 1;
+    if ( memcmp(header->magic, bdgl_caps_magic, sizeof(bdgl_caps_magic)) == 0
+        && header->fingerprint == BDGL_FINGERPRINT
+        && header->extCount == BDGL_EXTENSION_COUNT
+        && header->keyLen == keyLen
+        && header->major == bdgl_ctx.major
+        && header->minor == bdgl_ctx.minor
+        && header->profileMask == ctxBits[0]
+        && header->contextFlags == ctxBits[1]
+        && size == sizeof(bdgl_CapsHeader) + keyLen + (BDGL_EXTENSION_COUNT+7)/8 ) {
+
+        result = 0;
+        const uint8_t* k = fileKey;
+        for (int i=0; i<3; i++) {
+            size_t len = strlen(key[i]) + 1;
+            if ( memcmp(k, key[i], len) != 0 ) {
+                result = 1;
+                break;
+            }
+            k += len;
+        }
+    }
+
+    if (result == 0) {
+        for (uint32_t i=0; i<BDGL_EXTENSION_COUNT; i++) {
+            uint8_t present = (bitmap[i/8] >> (i%8)) & 1;
+            atomic_store_explicit(&bdgl_extensions[i]->present, present ? 1 : 2, memory_order_release);
+        }
+    }
+
+    munmap((void*)file, size);
+    return result;
+}
+
+int bdgl_caps_save(const char* path) {
+
+    bdgl_loadproc loadproc = bdgl_ctx.loadproc;
+    if ( !atomic_load_explicit(&bdgl_ctx.ready, memory_order_acquire) || loadproc == 0 ) {
+        return 1;
+    }
+
+    // without the extension list, every extension would be saved as absent
+    // (and a warm start would trust that until the driver changes)
+    if ( bdgl_ext_init() ) {
+        return 1;
+    }
+
+    const char* key[3];
+    int32_t ctxBits[2];
+    uint32_t keyLen = bdgl_caps_key(loadproc, key, ctxBits);
+    if (keyLen == 0) {
+        return 1;
+    }
+
+    bdgl_CapsHeader header;
+    memset(&header, 0, sizeof(header));
+    memcpy(header.magic, bdgl_caps_magic, sizeof(bdgl_caps_magic));
+    header.fingerprint = BDGL_FINGERPRINT;
+    header.extCount = BDGL_EXTENSION_COUNT;
+    header.keyLen = keyLen;
+    header.major = bdgl_ctx.major;
+    header.minor = bdgl_ctx.minor;
+    header.profileMask = ctxBits[0];
+    header.contextFlags = ctxBits[1];
+
+    uint8_t bitmap[(BDGL_EXTENSION_COUNT+7)/8 + 1];
+    memset(bitmap, 0, sizeof(bitmap));
+    for (uint32_t i=0; i<BDGL_EXTENSION_COUNT; i++) {
+        uint8_t present = atomic_load_explicit(&bdgl_extensions[i]->present, memory_order_acquire);
+        if (present == 0) {
+            present = bdgl_have_ext(bdgl_extensions[i]->name) ? 1 : 2;
+        }
+        if (present == 1) {
+            bitmap[i/8] |= 1 << (i%8);
+        }
+    }
+
+    // write to a temporary file, then rename, so concurrent
+    // processes never map a partially written cache
+    size_t pathLen = strlen(path);
+    char* tmpPath = malloc(pathLen + 5);
+    memcpy(tmpPath, path, pathLen);
+    memcpy(tmpPath + pathLen, ".tmp", 5);
+
+    FILE* f = fopen(tmpPath, "wb");
+    if (f == NULL) {
+        free(tmpPath);
+        return 1;
+    }
+    int ok = fwrite(&header, sizeof(header), 1, f) == 1;
+    for (int i=0; i<3; i++) {
+        ok = ok && fwrite(key[i], strlen(key[i]) + 1, 1, f) == 1;
+    }
+    if ((BDGL_EXTENSION_COUNT+7)/8 > 0) {
+        ok = ok && fwrite(bitmap, (BDGL_EXTENSION_COUNT+7)/8, 1, f) == 1;
+    }
+    ok = (fclose(f) == 0) && ok;
+    ok = ok && rename(tmpPath, path) == 0;
+    if (!ok) {
+        remove(tmpPath);
+    }
+    free(tmpPath);
+    return ok ? 0 : 1;
+}
+
+#endif
+
+#ifdef BDGL_THREADED
+
+typedef void (*bdgl_exec)(void* args);
+
+// queue packet header, followed by the (generated) args struct and any copied data
+typedef struct {
+    bdgl_exec exec; // 0: padding up to the end of the buffer
+    uint32_t size; // total packet size (multiple of BDGL_QUEUE_ALIGN)
+} bdgl_Packet;
+
+#define BDGL_QUEUE_ALIGN 16
+#define BDGL_QUEUE_SIZE(size) (((size_t)(size) + BDGL_QUEUE_ALIGN-1) & ~(size_t)(BDGL_QUEUE_ALIGN-1))
+#define BDGL_QUEUE_MAX_CAPACITY (1u << 28)
+
+// queue space for 'size' bytes of copied data
+// (clamped, so the sum of a few never overflows and is still too big to queue)
+static size_t bdgl_queue_data(size_t size) {
+    return size > BDGL_QUEUE_MAX_CAPACITY ? BDGL_QUEUE_MAX_CAPACITY : BDGL_QUEUE_SIZE(size);
+}
+
+static struct {
+    uint8_t* buf; // 0: no queue, call the driver directly
+    uint32_t capacity;
+    uint64_t pending; // producer only: head after the packet being written
+    _Alignas(64) _Atomic uint64_t head; // written by the producer
+    _Alignas(64) _Atomic uint64_t tail; // written by the worker
+    _Atomic uint8_t stop;
+    _Atomic uint8_t stopped;
+    _Atomic uint8_t running; // 0: bdgl_thread_run not called yet, 1: called, 2: stopped before it was
+} bdgl_queue;
+
+// set on the worker, so calls made from the worker (e.g. debug callbacks) aren't queued
+static _Thread_local uint8_t bdgl_on_worker;
+
+int bdgl_thread_init(uint32_t capacity) {
+    if (bdgl_queue.buf != 0 || capacity < 4096 || capacity > BDGL_QUEUE_MAX_CAPACITY || (capacity & (capacity-1)) != 0) {
+        return 1;
+    }
+    bdgl_queue.buf = aligned_alloc(64, capacity);
+    if (bdgl_queue.buf == 0) {
+        return 1;
+    }
+    bdgl_queue.capacity = capacity;
+    bdgl_queue.pending = 0;
+    atomic_store_explicit(&bdgl_queue.head, 0, memory_order_relaxed);
+    atomic_store_explicit(&bdgl_queue.tail, 0, memory_order_relaxed);
+    atomic_store_explicit(&bdgl_queue.stopped, 0, memory_order_relaxed);
+    atomic_store_explicit(&bdgl_queue.running, 0, memory_order_relaxed);
+    atomic_store_explicit(&bdgl_queue.stop, 0, memory_order_release);
+    return 0;
+}
+
+// reserve a packet for 'exec' (args struct + copied data, a sum of bdgl_queue_data)
+// returns the args struct, or 0 if the call can't be queued (no queue, called
+// from the worker, or too big) and should go through bdgl_queue_call instead
+static void* bdgl_queue_alloc(bdgl_exec exec, size_t argsSize, size_t dataSize) {
+    if (bdgl_queue.buf == 0 || bdgl_on_worker) {
+        return 0;
+    }
+    size_t size = sizeof(bdgl_Packet) + BDGL_QUEUE_SIZE(argsSize) + dataSize;
+    if (dataSize > bdgl_queue.capacity / 2 || size > bdgl_queue.capacity / 2) {
+        return 0;
+    }
+
+    uint32_t mask = bdgl_queue.capacity - 1;
+    uint64_t head = atomic_load_explicit(&bdgl_queue.head, memory_order_relaxed);
+    // packets never wrap, pad to the start of the buffer instead
+    uint32_t offset = head & mask;
+    uint32_t padding = offset + size > bdgl_queue.capacity ? bdgl_queue.capacity - offset : 0;
+
+    uint32_t spins = 0;
+    while (head + padding + size - atomic_load_explicit(&bdgl_queue.tail, memory_order_acquire) > bdgl_queue.capacity) {
+        // queue is full, wait for the worker
+        bdgl_backoff(&spins);
+    }
+
+    if (padding != 0) {
+        bdgl_Packet* pad = (bdgl_Packet*)&bdgl_queue.buf[offset];
+        pad->exec = 0;
+        pad->size = padding;
+        head += padding;
+    }
+    bdgl_Packet* packet = (bdgl_Packet*)&bdgl_queue.buf[head & mask];
+    packet->exec = exec;
+    packet->size = (uint32_t)size;
+    bdgl_queue.pending = head + size;
+    return (uint8_t*)packet + sizeof(bdgl_Packet);
+}
+
+// publish the packet from the last bdgl_queue_alloc
+static void bdgl_queue_commit() {
+    atomic_store_explicit(&bdgl_queue.head, bdgl_queue.pending, memory_order_release);
+}
+
+typedef struct {
+    bdgl_exec exec;
+    void* args;
+    _Atomic uint8_t done;
+} bdgl_Call;
+
+static void bdgl_exec_call(void* args) {
+    bdgl_Call* call = *(bdgl_Call**)args;
+    call->exec(call->args);
+    atomic_store_explicit(&call->done, 1, memory_order_release);
+}
+
+static void bdgl_exec_nop(void* args) {
+    (void)args;
+}
+
+// run 'exec' on the worker, after everything already queued, and wait for it
+// ('args' is on the caller's stack, so nothing needs to be copied)
+static void bdgl_queue_call(bdgl_exec exec, void* args) {
+    bdgl_Call call = { exec, args, 0 };
+    bdgl_Call** packet = (bdgl_Call**)bdgl_queue_alloc(bdgl_exec_call, sizeof(bdgl_Call*), 0);
+    if (packet == 0) {
+        // no worker (or we're on it), call the driver directly
+        exec(args);
+        return;
+    }
+    *packet = &call;
+    bdgl_queue_commit();
+
+    uint32_t spins = 0;
+    while ( !atomic_load_explicit(&call.done, memory_order_acquire) ) {
+        bdgl_backoff(&spins);
+    }
+}
+
+void bdgl_thread_run() {
+    uint8_t expected = 0;
+    if ( !atomic_compare_exchange_strong(&bdgl_queue.running, &expected, 1) ) {
+        // already running, or bdgl_thread_stop got here first
+        return;
+    }
+    if (bdgl_queue.buf == 0) {
+        // no queue (bdgl_thread_init wasn't called)
+        atomic_store(&bdgl_queue.running, 0);
+        return;
+    }
+    bdgl_on_worker = 1;
+    uint32_t mask = bdgl_queue.capacity - 1;
+    uint64_t tail = atomic_load_explicit(&bdgl_queue.tail, memory_order_relaxed);
+    uint32_t spins = 0;
+    while (1) {
+        uint64_t head = atomic_load_explicit(&bdgl_queue.head, memory_order_acquire);
+        if (tail == head) {
+            // stop is set after the last packet is published, so once it's
+            // visible, head is final
+            if ( atomic_load_explicit(&bdgl_queue.stop, memory_order_acquire)
+                && atomic_load_explicit(&bdgl_queue.head, memory_order_acquire) == tail ) {
+                break;
+            }
+            bdgl_backoff(&spins);
+            continue;
+        }
+        spins = 0;
+        while (tail != head) {
+            bdgl_Packet* packet = (bdgl_Packet*)&bdgl_queue.buf[tail & mask];
+            if (packet->exec != 0) {
+                packet->exec((uint8_t*)packet + sizeof(bdgl_Packet));
+            }
+            tail += packet->size;
+            // hand the space back to the producer
+            atomic_store_explicit(&bdgl_queue.tail, tail, memory_order_release);
+        }
+    }
+    bdgl_on_worker = 0;
+    atomic_store_explicit(&bdgl_queue.stopped, 1, memory_order_release);
+}
+
+void bdgl_thread_flush() {
+    bdgl_queue_call(bdgl_exec_nop, 0);
+}
+
+void bdgl_thread_stop() {
+    if (bdgl_queue.buf == 0) {
+        return;
+    }
+    atomic_store_explicit(&bdgl_queue.stop, 1, memory_order_release);
+    // if the worker never started, nothing would ever set 'stopped': make sure it
+    // won't start on this queue and drop whatever was queued
+    uint8_t expected = 0;
+    if ( !atomic_compare_exchange_strong(&bdgl_queue.running, &expected, 2) ) {
+        uint32_t spins = 0;
+        while ( !atomic_load_explicit(&bdgl_queue.stopped, memory_order_acquire) ) {
+            bdgl_backoff(&spins);
+        }
+    }
+    free(bdgl_queue.buf);
+    bdgl_queue.buf = 0;
+}
+
+#endif
+
+#ifdef BDGL_STATE_CACHE
+
+static bdgl_State bdgl_state_default;
+static _Thread_local bdgl_State* bdgl_state_current;
+
+// used by the generated shadow wrappers
+static bdgl_State* bdgl_state_get() {
+    return bdgl_state_current ? bdgl_state_current : &bdgl_state_default;
+}
+
+void bdgl_state_bind(bdgl_State* state) {
+    bdgl_state_current = state;
+}
+
+void bdgl_state_invalidate() {
+    bdgl_State* state = bdgl_state_get();
+    memset(&state->entries, 0, sizeof(state->entries));
+}
+
+void bdgl_state_stats(uint64_t* hits, uint64_t* misses) {
+    bdgl_State* state = bdgl_state_get();
+    *hits = state->hits;
+    *misses = state->misses;
+}
+
+#endif
+
+#ifdef BDGL_ELF_RESOLVER
+
+#include <dlfcn.h>
+#include <link.h>
+
+// set by bdgl_elf_open, read-only afterwards
+static struct {
+    void* handle; // keeps the library loaded
+    ElfW(Addr) base;
+    const uint32_t* gnuHash;
+    const ElfW(Sym)* symtab;
+    const char* strtab;
+    bdgl_loadproc fallback;
+} bdgl_elf;
+
+// whether the dynamic linker relocated the DT_* pointers of the library's dynamic
+// section in place: glibc does when the section is writable (except on mips/riscv,
+// where it's always read-only), musl never does
+#if defined(__GLIBC__) && !defined(__mips__) && !defined(__riscv)
+#define BDGL_ELF_DYN_RELOCATED(flags) (((flags) & PF_W) != 0)
+#else
+#define BDGL_ELF_DYN_RELOCATED(flags) 0
+#endif
+
+// dl_iterate_phdr callback: 1 + the flags of the PT_DYNAMIC segment at 'data' (the
+// handle's l_ld), the object is matched by address, not by name
+static int bdgl_elf_dyn_flags(struct dl_phdr_info* info, size_t size, void* data) {
+    (void)size;
+    for (int i=0; i<info->dlpi_phnum; i++) {
+        const ElfW(Phdr)* phdr = &info->dlpi_phdr[i];
+        if (phdr->p_type == PT_DYNAMIC && (void*)(info->dlpi_addr + phdr->p_vaddr) == data) {
+            return 1 + (int)phdr->p_flags;
+        }
+    }
+    return 0;
+}
+
+int bdgl_elf_open(const char* library, bdgl_loadproc fallback) {
+    bdgl_elf_close();
+    bdgl_elf.fallback = fallback;
+
+    bdgl_elf.handle = dlopen(library, RTLD_NOW | RTLD_LOCAL);
+    if (bdgl_elf.handle == 0) {
+        return 1;
+    }
+    // the link map of the opened handle has its load bias and dynamic section
+    struct link_map* map = 0;
+    if (dlinfo(bdgl_elf.handle, RTLD_DI_LINKMAP, &map) != 0 || map == 0 || map->l_ld == 0) {
+        bdgl_elf_close();
+        return 1;
+    }
+    int flags = dl_iterate_phdr(bdgl_elf_dyn_flags, map->l_ld) - 1;
+    if (flags < 0) {
+        bdgl_elf_close();
+        return 1;
+    }
+    ElfW(Addr) bias = BDGL_ELF_DYN_RELOCATED(flags) ? 0 : map->l_addr;
+
+    for (const ElfW(Dyn)* dyn = map->l_ld; dyn->d_tag != DT_NULL; dyn++) {
+        ElfW(Addr) ptr = dyn->d_un.d_ptr + bias;
+        switch (dyn->d_tag) {
+            case DT_GNU_HASH: bdgl_elf.gnuHash = (const uint32_t*)ptr; break;
+            case DT_SYMTAB:   bdgl_elf.symtab = (const ElfW(Sym)*)ptr; break;
+            case DT_STRTAB:   bdgl_elf.strtab = (const char*)ptr; break;
+        }
+    }
+    bdgl_elf.base = map->l_addr;
+
+    if (bdgl_elf.gnuHash == 0 || bdgl_elf.symtab == 0 || bdgl_elf.strtab == 0) {
+        // an old DT_HASH only library
+        bdgl_elf_close();
+        return 1;
+    }
+    return 0;
+}
+
+// .gnu.hash lookup:
+//   [bucketCount, symOffset, bloomSize, bloomShift]
+//   bloom[bloomSize]       (ElfW(Addr) words)
+//   buckets[bucketCount]   (first symbol index of each bucket)
+//   chain[]                (symbol hash, low bit set on the last symbol of a bucket)
+static void* bdgl_elf_find(const char* name) {
+    const uint32_t* gnuHash = bdgl_elf.gnuHash;
+    uint32_t bucketCount = gnuHash[0];
+    uint32_t symOffset = gnuHash[1];
+    uint32_t bloomSize = gnuHash[2];
+    uint32_t bloomShift = gnuHash[3];
+    const ElfW(Addr)* bloom = (const ElfW(Addr)*)&gnuHash[4];
+    const uint32_t* buckets = (const uint32_t*)&bloom[bloomSize];
+    const uint32_t* chain = &buckets[bucketCount];
+
+    uint32_t hash = 5381;
+    for (const uint8_t* c = (const uint8_t*)name; *c; c++) {
+        hash = hash*33 + *c;
+    }
+
+    // bloom filter rejects most names the library doesn't export
+    const uint32_t bits = sizeof(ElfW(Addr)) * 8;
+    ElfW(Addr) word = bloom[(hash / bits) % bloomSize];
+    ElfW(Addr) mask = ((ElfW(Addr))1 << (hash % bits)) | ((ElfW(Addr))1 << ((hash >> bloomShift) % bits));
+    if ((word & mask) != mask) {
+        return 0;
+    }
+
+    uint32_t symIndex = buckets[hash % bucketCount];
+    if (symIndex < symOffset) {
+        // empty bucket
+        return 0;
+    }
+    while (1) {
+        uint32_t chainHash = chain[symIndex - symOffset];
+        if ((hash | 1) == (chainHash | 1)) {
+            const ElfW(Sym)* sym = &bdgl_elf.symtab[symIndex];
+            // (ST_TYPE is the same for ELF32/ELF64, IFUNCs are left to the fallback)
+            if (sym->st_shndx != SHN_UNDEF && ELF64_ST_TYPE(sym->st_info) == STT_FUNC
+                && strcmp(name, bdgl_elf.strtab + sym->st_name) == 0) {
+                return (void*)(bdgl_elf.base + sym->st_value);
+            }
+        }
+        if (chainHash & 1) {
+            return 0;
+        }
+        symIndex++;
+    }
+}
+
+void* bdgl_elf_loadproc(char* name) {
+    void* f = bdgl_elf.gnuHash != 0 ? bdgl_elf_find(name) : 0;
+    if (f == 0 && bdgl_elf.fallback != 0) {
+        f = bdgl_elf.fallback(name);
+    }
+    return f;
+}
+
+int bdgl_elf_load_all(const char* library, bdgl_loadproc fallback) {
+    // if the library can't be opened, everything goes through 'fallback'
+    bdgl_elf_open(library, fallback);
+    return bdgl_load_all(bdgl_elf_loadproc);
+}
+
+void bdgl_elf_close() {
+    if (bdgl_elf.handle != 0) {
+        dlclose(bdgl_elf.handle);
+    }
+    bdgl_loadproc fallback = bdgl_elf.fallback;
+    memset(&bdgl_elf, 0, sizeof(bdgl_elf));
+    bdgl_elf.fallback = fallback;
+}
+
+#endif
+
+void bdgl_ext_free() {
+    bdgl_lock(&bdgl_exts_tbl.lock);
+    atomic_store_explicit(&bdgl_exts_tbl.ready, 0, memory_order_relaxed);
+    bdgl_ext_release();
+    bdgl_unlock(&bdgl_exts_tbl.lock);
 }
 
 #endif
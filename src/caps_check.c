@@ -0,0 +1,108 @@
+#define BDGL_IMPL
+#define BDGL_CAPS_CACHE
+#include "../generated/fleet33.h"
+
+#include <stdio.h>
+
+// check-caps: the capability cache must round trip through a file, be rejected when
+// the driver strings or the context profile differ, and never be written without
+// the extension list.  one mode per run, since a warm start is a new process:
+//   caps_check cold|warm|renderer|compat|nolist <path>
+
+static const char* renderer = "StubGPU";
+static int profileMask = 1; // GL_CONTEXT_CORE_PROFILE_BIT
+static int haveGetStringi = 1;
+static int getStringiCalls;
+
+// GL_ARB_buffer_storage is present, GL_ARB_direct_state_access isn't
+// (the other extensions of the sample fleet are guaranteed)
+static const char* extensions[] = {
+    "GL_ARB_framebuffer_object", "GL_ARB_vertex_array_object", "GL_KHR_debug", "GL_ARB_debug_output",
+    "GL_ARB_buffer_storage",
+};
+#define EXTENSION_COUNT (sizeof(extensions) / sizeof(extensions[0]))
+
+static const GLubyte* stub_glGetString(GLenum name) {
+    switch (name) {
+        case GL_VENDOR: return (const GLubyte*)"Stub";
+        case GL_RENDERER: return (const GLubyte*)renderer;
+        case GL_VERSION: return (const GLubyte*)"3.3.0 stub";
+    }
+    return 0;
+}
+
+static const GLubyte* stub_glGetStringi(GLenum name, GLuint index) {
+    getStringiCalls++;
+    return (const GLubyte*)(name == GL_EXTENSIONS && index < EXTENSION_COUNT ? extensions[index] : 0);
+}
+
+static void stub_glGetIntegerv(GLenum pname, GLint* data) {
+    switch (pname) {
+        case GL_NUM_EXTENSIONS: *data = EXTENSION_COUNT; break;
+        case GL_CONTEXT_PROFILE_MASK: *data = profileMask; break;
+        default: *data = 0;
+    }
+}
+
+static void stub_other(void) {
+}
+
+typedef void (*stub_proc)(void);
+
+static stub_proc loadproc(char* name) {
+    if (strcmp(name, "glGetString") == 0) return (stub_proc)stub_glGetString;
+    if (strcmp(name, "glGetStringi") == 0) return haveGetStringi ? (stub_proc)stub_glGetStringi : 0;
+    if (strcmp(name, "glGetIntegerv") == 0) return (stub_proc)stub_glGetIntegerv;
+    return stub_other;
+}
+
+static int failures;
+
+static void check(const char* what, int got, int expected) {
+    if (got != expected) {
+        printf("FAIL %s: %d, expected %d\n", what, got, expected);
+        failures++;
+    }
+}
+
+int main(int argc, char** argv) {
+    if (argc != 3) {
+        printf("usage: caps_check cold|warm|renderer|compat|nolist <path>\n");
+        return 1;
+    }
+    const char* mode = argv[1];
+    const char* path = argv[2];
+    int warm = strcmp(mode, "warm") == 0;
+    if (strcmp(mode, "renderer") == 0) {
+        renderer = "OtherGPU";
+    } else if (strcmp(mode, "compat") == 0) {
+        profileMask = 2; // GL_CONTEXT_COMPATIBILITY_PROFILE_BIT
+    } else if (strcmp(mode, "nolist") == 0) {
+        haveGetStringi = 0;
+    }
+
+    check("bdgl_caps_load", bdgl_caps_load(path, (bdgl_loadproc)loadproc), warm ? 0 : 1);
+    // (glGetStringi is a GL_VERSION_3_0 command)
+    check("bdgl_load_all", bdgl_load_all((bdgl_loadproc)loadproc), haveGetStringi ? 0 : 1);
+
+    if (haveGetStringi) {
+        check("GL_ARB_buffer_storage", bdgl_load_extension(&bdgl_GL_ARB_buffer_storage, (bdgl_loadproc)loadproc), 0);
+        check("GL_ARB_direct_state_access", bdgl_load_extension(&bdgl_GL_ARB_direct_state_access, (bdgl_loadproc)loadproc), 1);
+        // a warm start never fetches the extension list
+        check("glGetStringi calls", getStringiCalls > 0, !warm);
+    }
+
+    if (strcmp(mode, "cold") == 0) {
+        check("bdgl_caps_save", bdgl_caps_save(path), 0);
+    } else if (!haveGetStringi) {
+        check("bdgl_caps_save without the extension list", bdgl_caps_save(path), 1);
+        FILE* f = fopen(path, "rb");
+        check("cache written without the extension list", f != NULL, 0);
+        if (f != NULL) {
+            fclose(f);
+        }
+    }
+
+    printf("%s %s\n", mode, failures ? "FAIL" : "ok");
+    return failures != 0;
+}
@@ -0,0 +1,92 @@
+#define _GNU_SOURCE
+#define BDGL_IMPL
+#define BDGL_ELF_RESOLVER
+#include "../generated/gl33core.h"
+
+#include <stdio.h>
+#include <time.h>
+
+// check-elf: every GL_VERSION_1_0 name resolved through the stub library's
+// .gnu.hash must match dlsym, and names it doesn't export must use the fallback
+// (the same through bdgl_elf_load_all)
+
+static char fallback_marker;
+
+static void* fallback(char* name) {
+    (void)name;
+    return &fallback_marker;
+}
+
+static double now() {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return ts.tv_sec + ts.tv_nsec * 1e-9;
+}
+
+int main(int argc, char* argv[]) {
+    const char* library = argc > 1 ? argv[1] : "dist/libbdgl_stub.so";
+
+    if ( bdgl_elf_open(library, fallback) ) {
+        printf("could not open %s\n", library);
+        return 1;
+    }
+    void* handle = dlopen(library, RTLD_NOW | RTLD_LOCAL);
+
+    int resolved = 0, fallbacks = 0;
+    for (const char* name = bdgl_GL_VERSION_1_0.names; *name; name += strlen(name) + 1) {
+        void* expected = dlsym(handle, name);
+        if (expected == 0 || strcmp(name, "glFinish") == 0) {
+            expected = &fallback_marker;
+        }
+        void* found = bdgl_elf_loadproc((char*)name);
+        if (found != expected) {
+            printf("mismatch: %s %p != %p\n", name, found, expected);
+            return 1;
+        }
+        if (found == &fallback_marker) {
+            fallbacks++;
+        } else {
+            resolved++;
+        }
+    }
+    printf("resolved: %d, fallback: %d\n", resolved, fallbacks);
+
+    // lookup cost, per name
+    const int rounds = 10000;
+    double start = now();
+    for (int r=0; r<rounds; r++) {
+        for (const char* name = bdgl_GL_VERSION_1_0.names; *name; name += strlen(name) + 1) {
+            if (bdgl_elf_loadproc((char*)name) == 0) return 1;
+        }
+    }
+    double elf = now() - start;
+    start = now();
+    for (int r=0; r<rounds; r++) {
+        for (const char* name = bdgl_GL_VERSION_1_0.names; *name; name += strlen(name) + 1) {
+            if (dlsym(handle, name) == 0 && fallback((char*)name) == 0) return 1;
+        }
+    }
+    double dl = now() - start;
+    int count = (resolved + fallbacks) * rounds;
+    printf(".gnu.hash: %.1f ns/name, dlsym: %.1f ns/name\n", elf * 1e9 / count, dl * 1e9 / count);
+
+    // bulk load: every version through the resolver, the exported ones from the library
+    bdgl_elf_close();
+    if ( bdgl_elf_load_all(library, fallback) || !bdgl_GL_VERSION_1_0.loaded ) {
+        printf("bdgl_elf_load_all failed\n");
+        return 1;
+    }
+    int index = 0;
+    for (const char* name = bdgl_GL_VERSION_1_0.names; *name; name += strlen(name) + 1, index++) {
+        void* loaded;
+        memcpy(&loaded, &bdgl_fp_GL_VERSION_1_0[index], sizeof(loaded));
+        if (strcmp(name, "glClear") == 0 && loaded != dlsym(handle, name)) {
+            printf("bdgl_elf_load_all: glClear %p != %p\n", loaded, dlsym(handle, name));
+            return 1;
+        }
+    }
+
+    dlclose(handle);
+    bdgl_elf_close();
+    return 0;
+}
@@ -0,0 +1,17 @@
+// stub GL library for check-elf, exports part of GL_VERSION_1_0
+// (the rest must be resolved by the fallback loadproc)
+
+const unsigned char* glGetString(unsigned int name) {
+    return (const unsigned char*)(name == 0x1F02 ? "3.3.0 stub" : "");
+}
+
+void glClear(unsigned int mask) { (void)mask; }
+void glClearColor(float r, float g, float b, float a) { (void)r; (void)g; (void)b; (void)a; }
+void glDrawArrays(unsigned int mode, int first, int count) { (void)mode; (void)first; (void)count; }
+void glEnable(unsigned int cap) { (void)cap; }
+void glDisable(unsigned int cap) { (void)cap; }
+void glViewport(int x, int y, int width, int height) { (void)x; (void)y; (void)width; (void)height; }
+void glFlush(void) {}
+
+// exported, but not a function: must not be resolved
+int glFinish = 0;
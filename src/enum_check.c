@@ -0,0 +1,57 @@
+#define BDGL_IMPL
+#include "../generated/gl33core.h"
+
+#include <stdio.h>
+
+// check-enums: bdgl_enum_name must name a value in its own group (also when other
+// groups give the same value another name), and return NULL for anything else.
+// no context needed
+
+static int failures;
+
+static void check_name(const char* what, uint32_t group, uint32_t value, const char* expected) {
+    const char* name = bdgl_enum_name(group, value);
+    int ok = expected == 0 ? name == 0 : name != 0 && strcmp(name, expected) == 0;
+    if (!ok) {
+        printf("FAIL %s: 0x%04X is %s, expected %s\n", what, (unsigned)value,
+            name ? name : "NULL", expected ? expected : "NULL");
+        failures++;
+    }
+}
+
+int main() {
+    check_name("PrimitiveType", BDGL_ENUM_GROUP_PrimitiveType, GL_TRIANGLES, "GL_TRIANGLES");
+    check_name("BlendingFactor", BDGL_ENUM_GROUP_BlendingFactor, GL_ONE, "GL_ONE");
+    check_name("TextureTarget", BDGL_ENUM_GROUP_TextureTarget, GL_TEXTURE_2D, "GL_TEXTURE_2D");
+
+    // values shared by several groups, each group has its own name for them
+    check_name("0 BlendingFactor", BDGL_ENUM_GROUP_BlendingFactor, 0, "GL_ZERO");
+    check_name("0 Boolean", BDGL_ENUM_GROUP_Boolean, 0, "GL_FALSE");
+    check_name("0 PrimitiveType", BDGL_ENUM_GROUP_PrimitiveType, 0, "GL_POINTS");
+    check_name("1 BlendingFactor", BDGL_ENUM_GROUP_BlendingFactor, 1, "GL_ONE");
+    check_name("1 Boolean", BDGL_ENUM_GROUP_Boolean, 1, "GL_TRUE");
+    check_name("1 PrimitiveType", BDGL_ENUM_GROUP_PrimitiveType, 1, "GL_LINES");
+    check_name("GL_TEXTURE_2D EnableCap", BDGL_ENUM_GROUP_EnableCap, GL_TEXTURE_2D, "GL_TEXTURE_2D");
+
+    // unknown: a value the group doesn't have (including another group's value),
+    // and a group that doesn't exist
+    check_name("unknown PrimitiveType", BDGL_ENUM_GROUP_PrimitiveType, 0x1234, 0);
+    check_name("GL_TEXTURE_2D PrimitiveType", BDGL_ENUM_GROUP_PrimitiveType, GL_TEXTURE_2D, 0);
+    check_name("GL_TRIANGLES TextureTarget", BDGL_ENUM_GROUP_TextureTarget, GL_TRIANGLES, 0);
+    check_name("unknown Boolean", BDGL_ENUM_GROUP_Boolean, 2, 0);
+    check_name("no group", BDGL_ENUM_GROUP_COUNT, GL_TRIANGLES, 0);
+    check_name("no group (max)", 0xFFFFFFFFu, GL_TRIANGLES, 0);
+
+    // no value outside a group may alias into one of its slots: every PrimitiveType
+    // value is below 16, so nothing else in the 16-bit range may be named
+    for (uint32_t value = 16; value < 0x10000; value++) {
+        const char* name = bdgl_enum_name(BDGL_ENUM_GROUP_PrimitiveType, value);
+        if (name != 0) {
+            printf("FAIL PrimitiveType names 0x%04X %s\n", (unsigned)value, name);
+            failures++;
+        }
+    }
+
+    printf(failures == 0 ? "ok\n" : "FAIL\n");
+    return failures == 0 ? 0 : 1;
+}
@@ -0,0 +1,88 @@
+#define BDGL_IMPL
+#include FLEET_HEADER
+
+#include <stdio.h>
+
+// check-fleet: a header generated from the sample fleet files must compile, and the
+// commands its versions and extensions share (glBindFramebuffer in GL_VERSION_3_0 and
+// GL_ARB_framebuffer_object) must be defined once and reach the (stub) driver from
+// whichever owner loaded them.  STUB_VERSION is the stub context's GL_VERSION
+
+static const char* extensions[] = {
+    "GL_ARB_framebuffer_object", "GL_ARB_vertex_array_object", "GL_KHR_debug", "GL_ARB_debug_output",
+};
+#define EXTENSION_COUNT (sizeof(extensions) / sizeof(extensions[0]))
+
+static const GLubyte* stub_glGetString(GLenum name) {
+    if (name == GL_VERSION) {
+        return (const GLubyte*)STUB_VERSION;
+    }
+    if (name == GL_EXTENSIONS) {
+        return (const GLubyte*)"GL_ARB_framebuffer_object GL_ARB_vertex_array_object GL_KHR_debug GL_ARB_debug_output";
+    }
+    return (const GLubyte*)"";
+}
+
+static const GLubyte* stub_glGetStringi(GLenum name, GLuint index) {
+    return (const GLubyte*)(name == GL_EXTENSIONS && index < EXTENSION_COUNT ? extensions[index] : 0);
+}
+
+static void stub_glGetIntegerv(GLenum pname, GLint* data) {
+    // GL_NUM_EXTENSIONS, and no profile/flags bits
+    *data = pname == 0x821D ? (GLint)EXTENSION_COUNT : 0;
+}
+
+static GLuint boundFramebuffer;
+static GLDEBUGPROC debugCallback;
+
+static void stub_glBindFramebuffer(GLenum target, GLuint framebuffer) {
+    (void)target;
+    boundFramebuffer = framebuffer;
+}
+
+static void stub_glDebugMessageCallback(GLDEBUGPROC callback, const void* userParam) {
+    (void)userParam;
+    debugCallback = callback;
+}
+
+static void stub_other(void) {
+}
+
+typedef void (*stub_proc)(void);
+
+static stub_proc loadproc(char* name) {
+    if (strcmp(name, "glGetString") == 0) return (stub_proc)stub_glGetString;
+    if (strcmp(name, "glGetStringi") == 0) return (stub_proc)stub_glGetStringi;
+    if (strcmp(name, "glGetIntegerv") == 0) return (stub_proc)stub_glGetIntegerv;
+    if (strcmp(name, "glBindFramebuffer") == 0) return (stub_proc)stub_glBindFramebuffer;
+    if (strcmp(name, "glDebugMessageCallback") == 0) return (stub_proc)stub_glDebugMessageCallback;
+    return stub_other;
+}
+
+static void APIENTRY onDebugMessage(GLenum source, GLenum type, GLuint id, GLenum severity, GLsizei length,
+    const GLchar* message, const void* userParam) {
+
+    (void)source; (void)type; (void)id; (void)severity; (void)length; (void)message; (void)userParam;
+}
+
+int main() {
+    int failures = 0;
+    if ( bdgl_load_all((bdgl_loadproc)loadproc) ) {
+        printf("FAIL load\n");
+        return 1;
+    }
+
+    glBindFramebuffer(GL_FRAMEBUFFER, 3);
+    if (boundFramebuffer != 3) {
+        printf("FAIL glBindFramebuffer: %u, expected 3\n", boundFramebuffer);
+        failures++;
+    }
+    glDebugMessageCallback(onDebugMessage, 0);
+    if (debugCallback != onDebugMessage) {
+        printf("FAIL glDebugMessageCallback\n");
+        failures++;
+    }
+
+    printf("%s %s\n", STUB_VERSION, failures ? "FAIL" : "ok");
+    return failures != 0;
+}
@@ -0,0 +1,9 @@
+// compiled without BDGL_IMPL, to check that BDGL_INLINE wrappers collapse to a
+// single indirect jmp/call in translation units other than the BDGL_IMPL one
+// (see the 'check-inline' make target)
+#define BDGL_INLINE
+#include "../generated/gl33core.h"
+
+const GLubyte* call_gl_example() {
+    return glGetString(GL_VERSION);
+}
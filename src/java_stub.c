@@ -0,0 +1,35 @@
+// stub GL library for check-java, exports what JavaCheck calls
+// (every other command resolves to stub_other through its loadproc)
+
+static unsigned int lastClear;
+
+const unsigned char* glGetString(unsigned int name) {
+    return (const unsigned char*)(name == 0x1F02 ? "3.3.0 stub" : "");
+}
+
+void glGetIntegerv(unsigned int pname, int* data) {
+    // GL_NUM_EXTENSIONS
+    *data = pname == 0x821D ? 2 : 0;
+}
+
+const unsigned char* glGetStringi(unsigned int name, unsigned int index) {
+    static const char* exts[] = { "GL_ARB_stub_one", "GL_ARB_stub_two" };
+    return (const unsigned char*)(name == 0x1F03 && index < 2 ? exts[index] : 0);
+}
+
+void glClear(unsigned int mask) {
+    lastClear = mask;
+}
+
+// returns the last glClear mask, so a call's arguments/return value round trip
+unsigned int glGetError(void) {
+    return lastClear;
+}
+
+// records the framebuffer in lastClear, read back through glGetError
+void glBindFramebuffer(unsigned int target, unsigned int framebuffer) {
+    lastClear = framebuffer;
+}
+
+void stub_other(void) {
+}
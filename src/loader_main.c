@@ -84,6 +84,7 @@ int main(int argc, char* argv[]) {
     printf("parsed: %d.%d \n", major, minor);
 
     // extensions
+    // (the extension list is fetched lazily on first use, so this is optional)
     bdgl_ext_init();
 
     if ( bdgl_min_context(1,5) && bdgl_have_ext("GL_ARB_draw_instanced") ) {
@@ -0,0 +1,117 @@
+#define BDGL_IMPL
+#include "../generated/gl33core_state.h"
+
+#include <stdio.h>
+
+// check-state: redundant calls through the shadow wrappers must not reach the
+// (stub) driver, and anything that could have changed the state must
+
+static int driverCalls;
+
+static const uint8_t* stub_glGetString(GLenum name) {
+    return (const uint8_t*)(name == GL_VERSION ? "3.3.0 stub" : "");
+}
+
+static void stub_call(void) {
+    driverCalls++;
+}
+
+typedef void (*stub_proc)(void);
+
+static stub_proc loadproc(char* name) {
+    if (strcmp(name, "glGetString") == 0) {
+        return (stub_proc)stub_glGetString;
+    }
+    return stub_call;
+}
+
+static int failures;
+
+// 'expected' driver calls since the last check
+static void check(const char* what, int expected) {
+    if (driverCalls != expected) {
+        printf("FAIL %s: %d driver calls, expected %d\n", what, driverCalls, expected);
+        failures++;
+    }
+    driverCalls = 0;
+}
+
+int main() {
+    if (bdgl_load_all((bdgl_loadproc)loadproc)) {
+        printf("load failed\n");
+        return 1;
+    }
+
+    glBindBuffer(GL_ARRAY_BUFFER, 1);
+    glBindBuffer(GL_ARRAY_BUFFER, 1);
+    glBindBuffer(GL_UNIFORM_BUFFER, 1);
+    glBindBuffer(GL_ARRAY_BUFFER, 2);
+    check("glBindBuffer per target", 3);
+
+    glBindVertexArray(1);
+    glBindBuffer(GL_ARRAY_BUFFER, 2);
+    glBindVertexArray(1);
+    check("glBindVertexArray resets glBindBuffer", 2);
+
+    glActiveTexture(GL_TEXTURE0);
+    glBindTexture(GL_TEXTURE_2D, 5);
+    glActiveTexture(GL_TEXTURE1);
+    glBindTexture(GL_TEXTURE_2D, 5);
+    glActiveTexture(GL_TEXTURE0);
+    glBindTexture(GL_TEXTURE_2D, 5);
+    check("glBindTexture per texture unit", 5);
+
+    glDeleteTextures(0, 0);
+    glBindTexture(GL_TEXTURE_2D, 5);
+    check("glDeleteTextures resets glBindTexture", 2);
+
+    glEnable(GL_BLEND);
+    glEnable(GL_BLEND);
+    glDisable(GL_BLEND);
+    glDisable(GL_BLEND);
+    glEnable(GL_DEPTH_TEST);
+    glEnable(GL_BLEND);
+    check("glEnable/glDisable", 4);
+
+    glBlendFunc(GL_ONE, GL_ZERO);
+    glBlendFunc(GL_ONE, GL_ZERO);
+    glBlendFuncSeparate(GL_ONE, GL_ZERO, GL_ONE, GL_ZERO);
+    glBlendFunc(GL_ONE, GL_ZERO);
+    check("glBlendFunc/glBlendFuncSeparate", 3);
+
+    glBindFramebuffer(GL_FRAMEBUFFER, 3);
+    glBindFramebuffer(GL_DRAW_FRAMEBUFFER, 3);
+    glBindFramebuffer(GL_READ_FRAMEBUFFER, 4);
+    glBindFramebuffer(GL_FRAMEBUFFER, 3);
+    glBindFramebuffer(GL_FRAMEBUFFER, 3);
+    check("glBindFramebuffer", 4);
+
+    glBindSampler(40, 1);
+    glBindSampler(40, 1);
+    check("glBindSampler outside the cached units", 2);
+
+    uint64_t hits, misses;
+    bdgl_state_stats(&hits, &misses);
+
+    bdgl_state_invalidate();
+    glUseProgram(7);
+    glUseProgram(7);
+    check("bdgl_state_invalidate", 1);
+
+    // a second context starts with nothing known
+    static bdgl_State other;
+    bdgl_state_bind(&other);
+    glUseProgram(7);
+    glEnable(GL_BLEND);
+    check("bdgl_state_bind", 2);
+    bdgl_state_bind(0);
+    glUseProgram(7);
+    check("bdgl_state_bind(NULL)", 0);
+
+    printf("hits %llu misses %llu\n", (unsigned long long)hits, (unsigned long long)misses);
+    if (hits != 7 || misses != 24) {
+        printf("FAIL counters\n");
+        failures++;
+    }
+    return failures != 0;
+}
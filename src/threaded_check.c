@@ -0,0 +1,223 @@
+#define BDGL_IMPL
+#include "../generated/gl33core_threaded.h"
+
+#include <pthread.h>
+#include <stdio.h>
+#include <time.h>
+
+// check-threaded: calls queued from the app thread must reach the (stub) driver on
+// the worker, in order, with copied arguments that outlive the caller's memory.
+// synchronous calls must see everything queued before them, and flush/stop must
+// only return once the queue is drained
+
+static pthread_t worker;
+static int failures;
+
+static void fail(const char* what, long got, long expected) {
+    printf("FAIL %s: %ld, expected %ld\n", what, got, expected);
+    failures++;
+}
+
+// recording stub driver (only ever called on the worker)
+static long wrongThread;
+static long clears;
+static long clearOrderErrors;
+static long uniformSum;
+static long bufferBytes;
+static long bufferSum;
+static const void* compressedData;
+static long shaderSourceSum;
+static const void* drawIndices;
+
+static void onWorker() {
+    if ( !pthread_equal(pthread_self(), worker) ) {
+        wrongThread++;
+    }
+}
+
+static const GLubyte* stub_glGetString(GLenum name) {
+    return (const GLubyte*)(name == GL_VERSION ? "3.3.0 stub" : "");
+}
+
+static void stub_glClear(GLbitfield mask) {
+    onWorker();
+    if (mask != clears) {
+        clearOrderErrors++;
+    }
+    clears++;
+}
+
+static void stub_glUniform4fv(GLint location, GLsizei count, const GLfloat* value) {
+    onWorker();
+    if (location == 1) {
+        // keep the worker busy for a while, so anything queued behind this runs late
+        struct timespec start, now;
+        timespec_get(&start, TIME_UTC);
+        do {
+            timespec_get(&now, TIME_UTC);
+        } while ((now.tv_sec - start.tv_sec) * 1000000000L + (now.tv_nsec - start.tv_nsec) < 100000000L);
+        return;
+    }
+    for (int i=0; i<count*4; i++) {
+        uniformSum += (long)value[i];
+    }
+}
+
+static void stub_glBufferData(GLenum target, GLsizeiptr size, const void* data, GLenum usage) {
+    (void)target;
+    (void)usage;
+    onWorker();
+    bufferBytes += size;
+    for (GLsizeiptr i=0; i<size; i++) {
+        bufferSum += ((const uint8_t*)data)[i];
+    }
+}
+
+static void stub_glCompressedTexSubImage2D(GLenum target, GLint level, GLint xoffset, GLint yoffset,
+    GLsizei width, GLsizei height, GLenum format, GLsizei imageSize, const void* data) {
+
+    (void)target; (void)level; (void)xoffset; (void)yoffset;
+    (void)width; (void)height; (void)format; (void)imageSize;
+    onWorker();
+    compressedData = data;
+}
+
+static void stub_glShaderSource(GLuint shader, GLsizei count, const GLchar *const* string, const GLint* length) {
+    (void)shader;
+    (void)length;
+    onWorker();
+    for (int i=0; i<count; i++) {
+        for (const GLchar* c = string[i]; *c; c++) {
+            shaderSourceSum += *c;
+        }
+    }
+}
+
+static void stub_glDrawElements(GLenum mode, GLsizei count, GLenum type, const void* indices) {
+    (void)mode; (void)count; (void)type;
+    onWorker();
+    drawIndices = indices;
+}
+
+// returns the number of glClear calls so far
+static GLenum stub_glGetError(void) {
+    onWorker();
+    return (GLenum)clears;
+}
+
+static void stub_other(void) {
+}
+
+typedef void (*stub_proc)(void);
+
+static stub_proc loadproc(char* name) {
+    if (strcmp(name, "glGetString") == 0) return (stub_proc)stub_glGetString;
+    if (strcmp(name, "glClear") == 0) return (stub_proc)stub_glClear;
+    if (strcmp(name, "glUniform4fv") == 0) return (stub_proc)stub_glUniform4fv;
+    if (strcmp(name, "glBufferData") == 0) return (stub_proc)stub_glBufferData;
+    if (strcmp(name, "glCompressedTexSubImage2D") == 0) return (stub_proc)stub_glCompressedTexSubImage2D;
+    if (strcmp(name, "glDrawElements") == 0) return (stub_proc)stub_glDrawElements;
+    if (strcmp(name, "glShaderSource") == 0) return (stub_proc)stub_glShaderSource;
+    if (strcmp(name, "glGetError") == 0) return (stub_proc)stub_glGetError;
+    return stub_other;
+}
+
+static void* run(void* arg) {
+    (void)arg;
+    if ( bdgl_load_all((bdgl_loadproc)loadproc) ) {
+        printf("load failed\n");
+        failures++;
+    }
+    bdgl_thread_run();
+    return 0;
+}
+
+int main() {
+    if ( bdgl_thread_init(4096) ) {
+        printf("bdgl_thread_init failed\n");
+        return 1;
+    }
+    pthread_create(&worker, 0, run, 0);
+
+    // small queue, so it wraps and fills up many times
+    const int calls = 100000;
+    long expectedUniformSum = 0;
+    for (int i=0; i<calls; i++) {
+        glClear(i);
+
+        GLfloat value[8];
+        for (int j=0; j<8; j++) {
+            value[j] = (GLfloat)(i % 7 + j);
+            expectedUniformSum += i % 7 + j;
+        }
+        glUniform4fv(0, 2, value);
+        // the caller can reuse its memory as soon as the call returns
+        for (int j=0; j<8; j++) {
+            value[j] = -1000;
+        }
+
+        if (i % 10000 == 0) {
+            // runs on the worker after every call queued before it
+            GLenum cleared = glGetError();
+            if (cleared != (GLenum)i + 1) {
+                fail("glGetError after queued glClear calls", cleared, i + 1);
+            }
+        }
+    }
+
+    static uint8_t big[8192]; // more than the queue holds, so it's a synchronous call
+    static uint8_t small[100];
+    memset(big, 1, sizeof(big));
+    memset(small, 2, sizeof(small));
+    glBufferData(GL_ARRAY_BUFFER, sizeof(big), big, GL_STATIC_DRAW);
+    glBufferData(GL_ARRAY_BUFFER, sizeof(small), small, GL_STATIC_DRAW);
+    memset(small, 0, sizeof(small));
+
+    // data is an offset into a bound GL_PIXEL_UNPACK_BUFFER: passed through, not copied
+    const void* offset = (const void*)(uintptr_t)64;
+    glCompressedTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, 4, 4, 0, 16, offset);
+    // a core context only takes indices from the bound GL_ELEMENT_ARRAY_BUFFER: queued by value
+    const void* indicesOffset = (const void*)(uintptr_t)128;
+    glDrawElements(GL_TRIANGLES, 3, GL_UNSIGNED_SHORT, indicesOffset);
+
+    // only the array of string pointers could be copied, so the call waits for the
+    // driver and the caller can free its source right away
+    char* source = malloc(64);
+    strcpy(source, "void main() {}");
+    long expectedSourceSum = 0;
+    for (const char* c = source; *c; c++) {
+        expectedSourceSum += *c;
+    }
+    const GLchar* sources[] = { source };
+    glUniform4fv(1, 0, 0);
+    glShaderSource(1, 1, sources, 0);
+    memset(source, 'x', 63);
+    free(source);
+
+    bdgl_thread_flush();
+    if (shaderSourceSum != expectedSourceSum) fail("glShaderSource strings", shaderSourceSum, expectedSourceSum);
+    if (clears != calls) fail("glClear calls after flush", clears, calls);
+    if (clearOrderErrors != 0) fail("glClear out of order", clearOrderErrors, 0);
+    if (uniformSum != expectedUniformSum) fail("glUniform4fv copied values", uniformSum, expectedUniformSum);
+    if (bufferBytes != 8292) fail("glBufferData bytes", bufferBytes, 8292);
+    if (bufferSum != 8192 + 200) fail("glBufferData copied values", bufferSum, 8192 + 200);
+    if (drawIndices != indicesOffset) fail("glDrawElements offset", (long)(uintptr_t)drawIndices, 128);
+    if (compressedData != offset) fail("glCompressedTexSubImage2D offset", (long)(uintptr_t)compressedData, 64);
+
+    glClear(calls);
+    bdgl_thread_stop();
+    pthread_join(worker, 0);
+    if (clears != calls + 1) fail("glClear calls after stop", clears, calls + 1);
+    if (wrongThread != 0) fail("driver calls off the worker", wrongThread, 0);
+
+    // stopping a queue no worker ever ran must not wait for one
+    if ( bdgl_thread_init(4096) ) {
+        printf("bdgl_thread_init failed\n");
+        return 1;
+    }
+    bdgl_thread_stop();
+    bdgl_thread_run();
+
+    printf("%s\n", failures ? "FAIL" : "ok");
+    return failures != 0;
+}